@@ -0,0 +1,57 @@
+// Copyright © Matt Jones and Contributors. Licensed under the MIT License (MIT). See LICENCE.md in the repository root for more information.
+
+package com.github.novelrt.fumocement.benchmarks;
+
+import com.github.novelrt.fumocement.memory.NativeMemory;
+import com.github.novelrt.fumocement.memory.NativeMemoryAccessor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares uploading a Java array to native memory value by value, and with the bulk
+ * methods of the {@link NativeMemoryAccessor}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BulkTransferBenchmark {
+    @Param({"64", "4096"})
+    private int length;
+
+    private NativeMemoryAccessor accessor;
+    private float[] array;
+    private long address;
+
+    @Setup
+    public void setup() {
+        accessor = NativeMemory.access();
+        array = new float[length];
+        address = accessor.allocateMemory(length * 4L);
+    }
+
+    @TearDown
+    public void tearDown() {
+        accessor.freeMemory(address);
+    }
+
+    @Benchmark
+    public void putFloatLoop() {
+        for (int i = 0; i < length; i++) {
+            accessor.putFloat(address + i * 4L, array[i]);
+        }
+    }
+
+    @Benchmark
+    public void putFloatArray() {
+        accessor.putFloatArray(address, array, 0, length);
+    }
+
+    @Benchmark
+    public void fillFloat() {
+        accessor.fillFloat(address, length, 1.0f);
+    }
+}
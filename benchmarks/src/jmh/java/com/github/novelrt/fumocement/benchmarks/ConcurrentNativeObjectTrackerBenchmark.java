@@ -0,0 +1,54 @@
+// Copyright © Matt Jones and Contributors. Licensed under the MIT License (MIT). See LICENCE.md in the repository root for more information.
+
+package com.github.novelrt.fumocement.benchmarks;
+
+import com.github.novelrt.fumocement.ConcurrentNativeObjectTracker;
+import com.github.novelrt.fumocement.NativeObjectTracker;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link ConcurrentNativeObjectTracker#getOrCreate(long)} with multiple threads resolving
+ * the same set of handles, which are already tracked (hit), or not (miss).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ConcurrentNativeObjectTrackerBenchmark {
+    @Param({"1024"})
+    private int trackedCount;
+
+    private ConcurrentNativeObjectTracker<DummyNativeObject> tracker;
+    // Keeps the tracked objects alive, so the hits stay hits.
+    private DummyNativeObject[] trackedObjects;
+    private long[] trackedHandles;
+
+    @Setup
+    public void setup() {
+        tracker = new ConcurrentNativeObjectTracker<>(DummyNativeObject::new,
+                NativeObjectTracker.Target.UNOWNED_OBJECTS);
+        trackedObjects = new DummyNativeObject[trackedCount];
+        trackedHandles = new long[trackedCount];
+        for (int i = 0; i < trackedCount; i++) {
+            trackedHandles[i] = 0x10000L + i * 16L;
+            trackedObjects[i] = tracker.getOrCreate(trackedHandles[i]);
+        }
+    }
+
+    @Benchmark
+    public DummyNativeObject hit() {
+        return tracker.getOrCreate(trackedHandles[ThreadLocalRandom.current().nextInt(trackedCount)]);
+    }
+
+    @Benchmark
+    public DummyNativeObject miss() {
+        // The created objects are not kept alive, the tracker has to clean them up as they get collected.
+        return tracker.getOrCreate(0x100000000L + ThreadLocalRandom.current().nextLong(1 << 24) * 16L);
+    }
+}
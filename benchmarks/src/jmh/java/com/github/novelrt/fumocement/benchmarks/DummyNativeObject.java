@@ -0,0 +1,29 @@
+// Copyright © Matt Jones and Contributors. Licensed under the MIT License (MIT). See LICENCE.md in the repository root for more information.
+
+package com.github.novelrt.fumocement.benchmarks;
+
+import com.github.novelrt.fumocement.DisposalMethod;
+import com.github.novelrt.fumocement.NativeObject;
+import com.github.novelrt.fumocement.Pointer;
+
+/**
+ * A native object whose handle is not backed by any native memory, with a deleter doing nothing.
+ * This isolates the cost of the Java-side bookkeeping done by {@link NativeObject}.
+ */
+public final class DummyNativeObject extends NativeObject {
+    public DummyNativeObject(@Pointer long handle, boolean owned) {
+        super(handle, owned, DummyNativeObject::deleteNothing);
+    }
+
+    public DummyNativeObject(@Pointer long handle, boolean owned, DisposalMethod disposalMethod) {
+        super(handle, owned, disposalMethod, DummyNativeObject::deleteNothing);
+    }
+
+    private static void deleteNothing(long handle) {
+    }
+
+    @Override
+    public @Pointer long getHandle() {
+        return super.getHandle();
+    }
+}
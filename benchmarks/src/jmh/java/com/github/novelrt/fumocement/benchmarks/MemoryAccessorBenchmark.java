@@ -0,0 +1,135 @@
+// Copyright © Matt Jones and Contributors. Licensed under the MIT License (MIT). See LICENCE.md in the repository root for more information.
+
+package com.github.novelrt.fumocement.benchmarks;
+
+import com.github.novelrt.fumocement.memory.NativeMemory;
+import com.github.novelrt.fumocement.memory.NativeMemoryAccessor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures single-value reads and writes through the default {@link NativeMemoryAccessor},
+ * which is the {@link com.github.novelrt.fumocement.memory.UnsafeNativeMemoryAccessor} on HotSpot.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MemoryAccessorBenchmark {
+    private NativeMemoryAccessor accessor;
+    private long address;
+
+    private boolean booleanValue = true;
+    private byte byteValue = 42;
+    private short shortValue = 4242;
+    private char charValue = 'f';
+    private int intValue = 424242;
+    private long longValue = 42424242424242L;
+    private float floatValue = 4.2f;
+    private double doubleValue = 4.242;
+
+    @Setup
+    public void setup() {
+        accessor = NativeMemory.access();
+        address = accessor.allocateMemory(Long.BYTES);
+        accessor.zeroMemory(address, Long.BYTES);
+    }
+
+    @TearDown
+    public void tearDown() {
+        accessor.freeMemory(address);
+    }
+
+    @Benchmark
+    public boolean getBoolean() {
+        return accessor.getBoolean(address);
+    }
+
+    @Benchmark
+    public void putBoolean() {
+        accessor.putBoolean(address, booleanValue);
+    }
+
+    @Benchmark
+    public byte getByte() {
+        return accessor.getByte(address);
+    }
+
+    @Benchmark
+    public void putByte() {
+        accessor.putByte(address, byteValue);
+    }
+
+    @Benchmark
+    public short getShort() {
+        return accessor.getShort(address);
+    }
+
+    @Benchmark
+    public void putShort() {
+        accessor.putShort(address, shortValue);
+    }
+
+    @Benchmark
+    public char getChar() {
+        return accessor.getChar(address);
+    }
+
+    @Benchmark
+    public void putChar() {
+        accessor.putChar(address, charValue);
+    }
+
+    @Benchmark
+    public int getInt() {
+        return accessor.getInt(address);
+    }
+
+    @Benchmark
+    public void putInt() {
+        accessor.putInt(address, intValue);
+    }
+
+    @Benchmark
+    public long getLong() {
+        return accessor.getLong(address);
+    }
+
+    @Benchmark
+    public void putLong() {
+        accessor.putLong(address, longValue);
+    }
+
+    @Benchmark
+    public float getFloat() {
+        return accessor.getFloat(address);
+    }
+
+    @Benchmark
+    public void putFloat() {
+        accessor.putFloat(address, floatValue);
+    }
+
+    @Benchmark
+    public double getDouble() {
+        return accessor.getDouble(address);
+    }
+
+    @Benchmark
+    public void putDouble() {
+        accessor.putDouble(address, doubleValue);
+    }
+
+    @Benchmark
+    public long getAddress() {
+        return accessor.getAddress(address);
+    }
+
+    @Benchmark
+    public void putAddress() {
+        accessor.putAddress(address, longValue);
+    }
+}
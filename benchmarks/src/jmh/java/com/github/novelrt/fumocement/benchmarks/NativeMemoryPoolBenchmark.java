@@ -0,0 +1,53 @@
+// Copyright © Matt Jones and Contributors. Licensed under the MIT License (MIT). See LICENCE.md in the repository root for more information.
+
+package com.github.novelrt.fumocement.benchmarks;
+
+import com.github.novelrt.fumocement.memory.NativeMemory;
+import com.github.novelrt.fumocement.memory.NativeMemoryAccessor;
+import com.github.novelrt.fumocement.memory.NativeMemoryPool;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares an allocation followed by a release using the system allocator
+ * (through the {@link NativeMemoryAccessor}), and using a {@link NativeMemoryPool}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NativeMemoryPoolBenchmark {
+    @Param({"4", "24", "256"})
+    private long size;
+
+    private NativeMemoryAccessor accessor;
+    private NativeMemoryPool pool;
+
+    @Setup
+    public void setup() {
+        accessor = NativeMemory.access();
+        pool = new NativeMemoryPool();
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Benchmark
+    public long systemAllocator() {
+        long address = accessor.allocateMemory(size);
+        accessor.freeMemory(address);
+        return address;
+    }
+
+    @Benchmark
+    public long pool() {
+        long address = pool.allocate(size);
+        pool.free(address, size);
+        return address;
+    }
+}
@@ -0,0 +1,40 @@
+// Copyright © Matt Jones and Contributors. Licensed under the MIT License (MIT). See LICENCE.md in the repository root for more information.
+
+package com.github.novelrt.fumocement.benchmarks;
+
+import com.github.novelrt.fumocement.DisposalMethod;
+import com.github.novelrt.fumocement.NativeObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the construction of {@link NativeObject}s, with and without a {@link java.lang.ref.Cleaner}
+ * registration.
+ * <p>
+ * Only owned objects with {@link DisposalMethod#GARBAGE_COLLECTED} get registered to the cleaner.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NativeObjectBenchmark {
+    private long handle = 0x1000;
+
+    @Benchmark
+    public NativeObject unowned() {
+        return new DummyNativeObject(handle++, false);
+    }
+
+    @Benchmark
+    public NativeObject ownedManual() {
+        return new DummyNativeObject(handle++, true, DisposalMethod.MANUAL);
+    }
+
+    @Benchmark
+    public NativeObject ownedGarbageCollected() {
+        return new DummyNativeObject(handle++, true, DisposalMethod.GARBAGE_COLLECTED);
+    }
+}
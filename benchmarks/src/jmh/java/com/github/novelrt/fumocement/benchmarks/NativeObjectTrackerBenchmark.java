@@ -0,0 +1,59 @@
+// Copyright © Matt Jones and Contributors. Licensed under the MIT License (MIT). See LICENCE.md in the repository root for more information.
+
+package com.github.novelrt.fumocement.benchmarks;
+
+import com.github.novelrt.fumocement.NativeObjectTracker;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link NativeObjectTracker#getOrCreate(long)} when the wrapper is already tracked (hit),
+ * and when it has to be created (miss).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NativeObjectTrackerBenchmark {
+    @Param({"1024"})
+    private int trackedCount;
+
+    private NativeObjectTracker<DummyNativeObject> tracker;
+    // Keeps the tracked objects alive, so the hits stay hits.
+    private DummyNativeObject[] trackedObjects;
+    private long[] trackedHandles;
+    private int hitIndex;
+    private long missHandle;
+
+    @Setup
+    public void setup() {
+        tracker = new NativeObjectTracker<>(DummyNativeObject::new, NativeObjectTracker.Target.UNOWNED_OBJECTS);
+        trackedObjects = new DummyNativeObject[trackedCount];
+        trackedHandles = new long[trackedCount];
+        for (int i = 0; i < trackedCount; i++) {
+            trackedHandles[i] = 0x10000L + i * 16L;
+            trackedObjects[i] = tracker.getOrCreate(trackedHandles[i]);
+        }
+        // Far away from the tracked handles.
+        missHandle = 0x100000000L;
+    }
+
+    @Benchmark
+    public DummyNativeObject hit() {
+        long handle = trackedHandles[hitIndex];
+        if (++hitIndex == trackedCount) {
+            hitIndex = 0;
+        }
+        return tracker.getOrCreate(handle);
+    }
+
+    @Benchmark
+    public DummyNativeObject miss() {
+        // The created objects are not kept alive, the tracker has to clean them up as they get collected.
+        missHandle += 16;
+        return tracker.getOrCreate(missHandle);
+    }
+}
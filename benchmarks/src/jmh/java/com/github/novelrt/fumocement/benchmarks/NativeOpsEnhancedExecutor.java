@@ -0,0 +1,37 @@
+// Copyright © Matt Jones and Contributors. Licensed under the MIT License (MIT). See LICENCE.md in the repository root for more information.
+
+package com.github.novelrt.fumocement.benchmarks;
+
+import com.github.novelrt.fumocement.NativeOpsEnhancedThread;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An executor running tasks on {@link NativeOpsEnhancedThread}s, used by JMH through
+ * the {@code jmh.executor=CUSTOM} option.
+ */
+public class NativeOpsEnhancedExecutor extends ThreadPoolExecutor {
+    // JMH requires this exact constructor signature.
+    public NativeOpsEnhancedExecutor(int maxThreads, String prefix) {
+        super(maxThreads, maxThreads, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new ThreadFactory(prefix));
+    }
+
+    private static final class ThreadFactory implements java.util.concurrent.ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+        private final String prefix;
+
+        private ThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            NativeOpsEnhancedThread thread = new NativeOpsEnhancedThread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
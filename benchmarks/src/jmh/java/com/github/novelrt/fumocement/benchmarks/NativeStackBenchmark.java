@@ -0,0 +1,79 @@
+// Copyright © Matt Jones and Contributors. Licensed under the MIT License (MIT). See LICENCE.md in the repository root for more information.
+
+package com.github.novelrt.fumocement.benchmarks;
+
+import com.github.novelrt.fumocement.memory.NativeStack;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the different ways of allocating memory on a {@link NativeStack}.
+ * <p>
+ * Each benchmark allocates a small struct-sized block and an {@code int32_t} out-parameter,
+ * which is the most common pattern found in generated bindings.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NativeStackBenchmark {
+    private static final long STRUCT_SIZE = 24;
+    private static final long INT_SIZE = 4;
+
+    private NativeStack stack;
+
+    @Setup
+    public void setup() {
+        stack = new NativeStack();
+    }
+
+    @TearDown
+    public void tearDown() {
+        stack.close();
+    }
+
+    @Benchmark
+    public long allocate() {
+        try (NativeStack.Resource struct = stack.allocate(STRUCT_SIZE);
+             NativeStack.Resource out = stack.allocate(INT_SIZE)) {
+            return struct.address() ^ out.address();
+        }
+    }
+
+    @Benchmark
+    public long scope() {
+        try (NativeStack.Scope scope = stack.scope()) {
+            return scope.allocate(STRUCT_SIZE) ^ scope.allocate(INT_SIZE);
+        }
+    }
+
+    @Benchmark
+    public long allocateManual() {
+        long struct = stack.allocateManual(STRUCT_SIZE);
+        long out = stack.allocateManual(INT_SIZE);
+        stack.freeManual(INT_SIZE);
+        stack.freeManual(STRUCT_SIZE);
+        return struct ^ out;
+    }
+
+    @Benchmark
+    public long markRestore() {
+        long mark = stack.mark();
+        try {
+            return stack.allocateManual(STRUCT_SIZE) ^ stack.allocateManual(INT_SIZE);
+        } finally {
+            stack.restore(mark);
+        }
+    }
+
+    @Benchmark
+    public long lease() {
+        try (NativeStack.Lease lease = NativeStack.lease()) {
+            NativeStack leased = lease.getStack();
+            return leased.allocateManual(STRUCT_SIZE) ^ leased.allocateManual(INT_SIZE);
+        }
+    }
+}
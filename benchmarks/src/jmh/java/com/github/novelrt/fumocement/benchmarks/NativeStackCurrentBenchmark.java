@@ -0,0 +1,43 @@
+// Copyright © Matt Jones and Contributors. Licensed under the MIT License (MIT). See LICENCE.md in the repository root for more information.
+
+package com.github.novelrt.fumocement.benchmarks;
+
+import com.github.novelrt.fumocement.memory.NativeStack;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link NativeStack#current()} on plain threads, where the stack comes from a
+ * {@link ThreadLocal}, and on threads patched with {@link NativeStack#optimizeCurrentThread()}.
+ * <p>
+ * Each benchmark runs in its own fork, so patching the worker thread in one benchmark
+ * does not leak into the other one.
+ *
+ * @see NativeStackEnhancedThreadBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NativeStackCurrentBenchmark {
+    @Benchmark
+    public NativeStack plainThread() {
+        return NativeStack.current();
+    }
+
+    @Benchmark
+    public NativeStack optimizedThread(OptimizedThread state) {
+        return NativeStack.current();
+    }
+
+    @State(Scope.Thread)
+    public static class OptimizedThread {
+        @Setup
+        public void setup() {
+            // Thread-scoped setups are run by the worker thread itself.
+            NativeStack.optimizeCurrentThread();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+// Copyright © Matt Jones and Contributors. Licensed under the MIT License (MIT). See LICENCE.md in the repository root for more information.
+
+package com.github.novelrt.fumocement.benchmarks;
+
+import com.github.novelrt.fumocement.NativeOpsEnhancedThread;
+import com.github.novelrt.fumocement.memory.NativeStack;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link NativeStack#current()} on a {@link NativeOpsEnhancedThread}.
+ * <p>
+ * JMH is told to run the benchmark threads on a {@link NativeOpsEnhancedExecutor}, so
+ * the worker threads are actual {@link NativeOpsEnhancedThread}s.
+ *
+ * @see NativeStackCurrentBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {
+        "-Djmh.executor=CUSTOM",
+        "-Djmh.executor.class=com.github.novelrt.fumocement.benchmarks.NativeOpsEnhancedExecutor"
+})
+@State(Scope.Thread)
+public class NativeStackEnhancedThreadBenchmark {
+    @Setup
+    public void setup() {
+        if (!(Thread.currentThread() instanceof NativeOpsEnhancedThread)) {
+            throw new IllegalStateException("The benchmark is not running on a NativeOpsEnhancedThread.");
+        }
+    }
+
+    @Benchmark
+    public NativeStack enhancedThread() {
+        return NativeStack.current();
+    }
+}
@@ -0,0 +1,66 @@
+// Copyright © Matt Jones and Contributors. Licensed under the MIT License (MIT). See LICENCE.md in the repository root for more information.
+
+package com.github.novelrt.fumocement.benchmarks;
+
+import com.github.novelrt.fumocement.NativeStrings;
+import com.github.novelrt.fumocement.memory.NativeMemory;
+import com.github.novelrt.fumocement.memory.NativeStack;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares encoding a string into native memory with {@link NativeStrings}, and going through
+ * a byte array first, which is what the byte array based bindings do.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NativeStringsBenchmark {
+    @Param({"16", "256"})
+    private int length;
+
+    private NativeStack stack;
+    private String string;
+    private long encodedString;
+
+    @Setup
+    public void setup() {
+        stack = new NativeStack();
+        string = "a".repeat(length);
+        encodedString = NativeStrings.encode(stack, string);
+    }
+
+    @TearDown
+    public void tearDown() {
+        stack.close();
+    }
+
+    @Benchmark
+    public long encodeThroughByteArray() {
+        long mark = stack.mark();
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        long address = stack.allocateManual(bytes.length + 1);
+        NativeMemory.access().putByteArray(address, bytes, 0, bytes.length);
+        NativeMemory.access().putByte(address + bytes.length, (byte) 0);
+        stack.restore(mark);
+        return address;
+    }
+
+    @Benchmark
+    public long encode() {
+        long mark = stack.mark();
+        long address = NativeStrings.encode(stack, string);
+        stack.restore(mark);
+        return address;
+    }
+
+    @Benchmark
+    public String decode() {
+        return NativeStrings.decode(encodedString);
+    }
+}
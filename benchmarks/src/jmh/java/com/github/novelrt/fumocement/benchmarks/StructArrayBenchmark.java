@@ -0,0 +1,65 @@
+// Copyright © Matt Jones and Contributors. Licensed under the MIT License (MIT). See LICENCE.md in the repository root for more information.
+
+package com.github.novelrt.fumocement.benchmarks;
+
+import com.github.novelrt.fumocement.layout.StructArray;
+import com.github.novelrt.fumocement.layout.TypeLayout;
+import com.github.novelrt.fumocement.memory.NativeMemory;
+import com.github.novelrt.fumocement.memory.NativeMemoryAccessor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares scanning a native array of structs by wrapping each element in a native object,
+ * and with the flyweight cursor of a {@link StructArray}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StructArrayBenchmark {
+    private static final TypeLayout ENTITY_LAYOUT = new TypeLayout(16, 4);
+    private static final long HEALTH_OFFSET = 8;
+
+    @Param({"50000"})
+    private int length;
+
+    private NativeMemoryAccessor accessor;
+    private long address;
+    private StructArray array;
+
+    @Setup
+    public void setup() {
+        accessor = NativeMemory.access();
+        address = accessor.allocateMemory(length * ENTITY_LAYOUT.size());
+        accessor.zeroMemory(address, length * ENTITY_LAYOUT.size());
+        array = new StructArray(address, length, ENTITY_LAYOUT);
+    }
+
+    @TearDown
+    public void tearDown() {
+        accessor.freeMemory(address);
+    }
+
+    @Benchmark
+    public long nativeObjectPerElement() {
+        long sum = 0;
+        for (int i = 0; i < length; i++) {
+            DummyNativeObject entity = new DummyNativeObject(address + i * ENTITY_LAYOUT.size(), false);
+            sum += accessor.getInt(entity.getHandle() + HEALTH_OFFSET);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long cursor() {
+        long sum = 0;
+        for (StructArray.Cursor entity : array) {
+            sum += entity.getInt(HEALTH_OFFSET);
+        }
+        return sum;
+    }
+}
@@ -5,9 +5,16 @@
 #define FUMOCEMENT_LIB
 
 #include "jni.h"
+#include <atomic>
+#include <cstddef>
+#include <cstdint>
+#include <cstring>
 #include <iostream>
+#include <new>
 #include <optional>
+#include <stdexcept>
 #include <string>
+#include <type_traits>
 #include <vector>
 
 namespace FumoCement
@@ -68,6 +75,9 @@ namespace FumoCement
 
     /*
      * String tools
+     *
+     * These are used by bindings that pass strings as byte arrays. New code can use NativeStrings
+     * on the Java side instead, which encodes and decodes strings in native memory directly.
      */
 
     inline std::optional<std::string> toCppString(JNIEnv* env, jbyteArray javaStringBytes) noexcept
@@ -77,16 +87,10 @@ namespace FumoCement
             return std::nullopt;
         }
 
+        // Copy the bytes straight into the string, instead of pinning or copying the whole array first.
         const jsize byteArraySize = env->GetArrayLength(javaStringBytes);
-        jbyte* bytePointer = env->GetByteArrayElements(javaStringBytes, JNI_FALSE);
-
-        std::string result(byteArraySize, '.');
-        for (int i = 0; i < byteArraySize; ++i)
-        {
-            result[i] = static_cast<char>(*(bytePointer + i));
-        }
-
-        env->ReleaseByteArrayElements(javaStringBytes, bytePointer, 0);
+        std::string result(byteArraySize, '\0');
+        env->GetByteArrayRegion(javaStringBytes, 0, byteArraySize, reinterpret_cast<jbyte*>(result.data()));
 
         return {result}; // New std::optional
     }
@@ -98,15 +102,9 @@ namespace FumoCement
             return nullptr;
         }
 
-        const auto stringLength = strlen(cString);
-        std::vector<jbyte> byteBuffer(stringLength);
-        for (int i = 0; cString[i] != '\0'; i++)
-        {
-            byteBuffer[i] = (static_cast<jbyte>(cString[i]));
-        }
-
+        const auto stringLength = static_cast<jsize>(std::strlen(cString));
         const jbyteArray charactersArray = env->NewByteArray(stringLength);
-        env->SetByteArrayRegion(charactersArray, 0, stringLength, byteBuffer.data());
+        env->SetByteArrayRegion(charactersArray, 0, stringLength, reinterpret_cast<const jbyte*>(cString));
 
         if (deleteString)
         {
@@ -185,6 +183,59 @@ namespace FumoCement
         throw new std::runtime_error("Failed to get the JavaVM.");
     }
 
+    /**
+     * Thread environments
+     */
+
+    // Gets the JNIEnv of the current thread, attaching it to the JVM as a daemon thread if needed.
+    //
+    // The JNIEnv is cached in a thread_local variable, so only the first call on each thread goes
+    // through the JavaVM. Threads attached here are detached when they exit, by the destructor of
+    // the thread_local variable. Threads attached by other code must stay attached as long as they
+    // can call this function.
+    inline JNIEnv* getThreadEnv(JavaVM* javaVm)
+    {
+        struct ThreadEnv
+        {
+            JavaVM* javaVm = nullptr;
+            JNIEnv* env = nullptr;
+            bool attachedHere = false;
+
+            ~ThreadEnv()
+            {
+                if (attachedHere)
+                {
+                    javaVm->DetachCurrentThread();
+                }
+            }
+        };
+        thread_local ThreadEnv threadEnv;
+
+        if (threadEnv.env != nullptr && threadEnv.javaVm == javaVm)
+        {
+            return threadEnv.env;
+        }
+
+        JNIEnv* env = nullptr;
+        const auto result = javaVm->GetEnv(reinterpret_cast<void**>(&env), JNI_VERSION_1_2);
+        if (result == JNI_EDETACHED)
+        {
+            if (javaVm->AttachCurrentThreadAsDaemon(reinterpret_cast<void**>(&env), nullptr) != JNI_OK)
+            {
+                throw std::runtime_error("JNI: Failed to attach to current thread.");
+            }
+            threadEnv.attachedHere = true;
+        }
+        else if (result != JNI_OK)
+        {
+            throw std::runtime_error("JNI: Failed to get an instance of JNIEnv");
+        }
+
+        threadEnv.javaVm = javaVm;
+        threadEnv.env = env;
+        return env;
+    }
+
     struct FunctionPointerContext
     {
         JavaVM* javaVm;
@@ -192,27 +243,255 @@ namespace FumoCement
 
         [[nodiscard]] JNIEnv* getEnv() const
         {
-            JNIEnv* env = nullptr; // TODO: cache this?
-            const auto result = javaVm->GetEnv(reinterpret_cast<void**>(&env), JNI_VERSION_1_2);
-            if (result == JNI_OK)
+            return getThreadEnv(javaVm);
+        }
+    };
+
+    /**
+     * Callback dispatch
+     */
+
+    template<typename Ret, typename... Args>
+    Ret callJavaMethod(JNIEnv* env, jobject object, jmethodID method, Args... args)
+    {
+        if constexpr (std::is_void_v<Ret>)
+        {
+            env->CallVoidMethod(object, method, args...);
+        }
+        else if constexpr (std::is_same_v<Ret, jboolean>)
+        {
+            return env->CallBooleanMethod(object, method, args...);
+        }
+        else if constexpr (std::is_same_v<Ret, jbyte>)
+        {
+            return env->CallByteMethod(object, method, args...);
+        }
+        else if constexpr (std::is_same_v<Ret, jchar>)
+        {
+            return env->CallCharMethod(object, method, args...);
+        }
+        else if constexpr (std::is_same_v<Ret, jshort>)
+        {
+            return env->CallShortMethod(object, method, args...);
+        }
+        else if constexpr (std::is_same_v<Ret, jint>)
+        {
+            return env->CallIntMethod(object, method, args...);
+        }
+        else if constexpr (std::is_same_v<Ret, jlong>)
+        {
+            return env->CallLongMethod(object, method, args...);
+        }
+        else if constexpr (std::is_same_v<Ret, jfloat>)
+        {
+            return env->CallFloatMethod(object, method, args...);
+        }
+        else if constexpr (std::is_same_v<Ret, jdouble>)
+        {
+            return env->CallDoubleMethod(object, method, args...);
+        }
+        else
+        {
+            static_assert(std::is_convertible_v<Ret, jobject>, "Unsupported JNI return type.");
+            return static_cast<Ret>(env->CallObjectMethod(object, method, args...));
+        }
+    }
+
+    // Calls the callback of a FunctionPointer, given the context passed as the last void* argument.
+    //
+    // The jmethodID is resolved once per callback interface and method, using the interface class,
+    // so it works with every implementation of the interface. Along with the cached JNIEnv, a call
+    // only costs the JNI upcall itself.
+    //
+    // Example: FumoCement::invokeCallback<Interface, MethodName, Signature, jint>(context, width, height);
+    template<typename Interface, typename MethodName, typename Signature, typename Ret, typename... Args>
+    Ret invokeCallback(void* context, Args... args)
+    {
+        const auto* functionPointerContext = static_cast<const FunctionPointerContext*>(context);
+        JNIEnv* env = functionPointerContext->getEnv();
+        const jmethodID method = getCachedMethod<Interface, MethodName, Signature>(env);
+        return callJavaMethod<Ret>(env, functionPointerContext->globalObjectRef, method, args...);
+    }
+
+    /**
+     * Ring buffers
+     */
+
+    // The native side of com.github.novelrt.fumocement.memory.NativeRingBuffer, a bounded lock-free queue of
+    // fixed-size messages with a single consumer, and one or many producers.
+    //
+    // Each slot starts with a sequence number telling whether it is free for the producer at a given position,
+    // or ready for the consumer. The memory is usually allocated and initialized by Java, but can also be
+    // initialized here, in which case it must be aligned to 8 bytes and hold sizeOf(capacity, messageSize) bytes.
+    struct RingBuffer
+    {
+        std::atomic<std::uint64_t> head;
+        char headPadding[56];
+        std::atomic<std::uint64_t> tail;
+        char tailPadding[56];
+        std::atomic<std::uint64_t> dropped;
+        char droppedPadding[56];
+        std::uint64_t capacity;
+        std::uint64_t slotSize;
+        std::uint32_t multiProducer;
+        char slotsPadding[44];
+
+        static std::size_t sizeOf(std::uint64_t capacity, std::size_t messageSize) noexcept
+        {
+            return sizeof(RingBuffer) + capacity * slotSizeOf(messageSize);
+        }
+
+        static RingBuffer* initialize(void* memory,
+                                      std::uint64_t capacity,
+                                      std::size_t messageSize,
+                                      bool multiProducer) noexcept
+        {
+            auto* buffer = new (memory) RingBuffer{};
+            buffer->capacity = capacity;
+            buffer->slotSize = slotSizeOf(messageSize);
+            buffer->multiProducer = multiProducer ? 1 : 0;
+            for (std::uint64_t i = 0; i < capacity; ++i)
             {
-                return env;
+                new (buffer->slotAt(i)) std::atomic<std::uint64_t>(i);
             }
-            if (result == JNI_EDETACHED)
+            std::atomic_thread_fence(std::memory_order_release);
+            return buffer;
+        }
+
+        // Reserves a message, which must be published with commit once written.
+        // Returns nullptr if the buffer is full.
+        std::byte* tryClaim() noexcept
+        {
+            std::uint64_t position = head.load(std::memory_order_relaxed);
+            while (true)
             {
-                // TODO: Detach... but when?
-                if (const auto attachResult =
-                        javaVm->AttachCurrentThreadAsDaemon(reinterpret_cast<void**>(&env), nullptr);
-                    attachResult == JNI_OK)
+                std::byte* slot = slotAt(position);
+                const std::uint64_t sequence = sequenceOf(slot).load(std::memory_order_acquire);
+                const auto difference = static_cast<std::int64_t>(sequence - position);
+                if (difference == 0)
+                {
+                    if (!multiProducer)
+                    {
+                        head.store(position + 1, std::memory_order_relaxed);
+                        return slot + sizeof(std::uint64_t);
+                    }
+                    if (head.compare_exchange_weak(position, position + 1, std::memory_order_relaxed))
+                    {
+                        return slot + sizeof(std::uint64_t);
+                    }
+                }
+                else if (difference < 0)
+                {
+                    // The consumer hasn't released this slot yet.
+                    dropped.fetch_add(1, std::memory_order_relaxed);
+                    return nullptr;
+                }
+                else
                 {
-                    return env;
+                    // Another producer has claimed this position.
+                    position = head.load(std::memory_order_relaxed);
                 }
+            }
+        }
 
-                throw std::runtime_error("JNI: Failed to attach to current thread.");
+        // Publishes a message obtained with tryClaim, making it visible to the consumer.
+        static void commit(std::byte* message) noexcept
+        {
+            auto& sequence = sequenceOf(message - sizeof(std::uint64_t));
+            // The sequence number of a claimed slot is still its position.
+            sequence.store(sequence.load(std::memory_order_relaxed) + 1, std::memory_order_release);
+        }
+
+        // Writes a message made of the given values, laid out like the fields of a C struct.
+        // Returns false if the buffer is full, or if the values don't fit in a message.
+        template<typename... Args> bool tryEnqueue(Args... args) noexcept
+        {
+            if (messageSizeOf<Args...>() > slotSize - sizeof(std::uint64_t))
+            {
+                dropped.fetch_add(1, std::memory_order_relaxed);
+                return false;
             }
-            throw std::runtime_error("JNI: Failed to get an instance of JNIEnv");
+
+            std::byte* message = tryClaim();
+            if (message == nullptr)
+            {
+                return false;
+            }
+            std::size_t offset = 0;
+            ((offset = alignOffset(offset, alignof(Args)), std::memcpy(message + offset, &args, sizeof(Args)),
+              offset += sizeof(Args)),
+             ...);
+            commit(message);
+            return true;
+        }
+
+        // Gets the next message without removing it, or nullptr if there is no message ready.
+        std::byte* peek() noexcept
+        {
+            const std::uint64_t position = tail.load(std::memory_order_relaxed);
+            std::byte* slot = slotAt(position);
+            if (sequenceOf(slot).load(std::memory_order_acquire) != position + 1)
+            {
+                return nullptr;
+            }
+            return slot + sizeof(std::uint64_t);
+        }
+
+        // Removes the message given by peek, so its slot can be used again by the producers.
+        void release() noexcept
+        {
+            const std::uint64_t position = tail.load(std::memory_order_relaxed);
+            sequenceOf(slotAt(position)).store(position + capacity, std::memory_order_release);
+            tail.store(position + 1, std::memory_order_release);
+        }
+
+        template<typename... Args> static constexpr std::size_t messageSizeOf() noexcept
+        {
+            std::size_t offset = 0;
+            ((offset = alignOffset(offset, alignof(Args)) + sizeof(Args)), ...);
+            return offset;
+        }
+
+    private:
+        static constexpr std::size_t slotSizeOf(std::size_t messageSize) noexcept
+        {
+            // Keep the sequence numbers aligned.
+            return alignOffset(sizeof(std::uint64_t) + messageSize, sizeof(std::uint64_t));
+        }
+
+        static constexpr std::size_t alignOffset(std::size_t offset, std::size_t alignment) noexcept
+        {
+            return (offset + alignment - 1) & ~(alignment - 1);
+        }
+
+        std::byte* slotAt(std::uint64_t position) noexcept
+        {
+            return reinterpret_cast<std::byte*>(this) + sizeof(RingBuffer) + (position & (capacity - 1)) * slotSize;
+        }
+
+        static std::atomic<std::uint64_t>& sequenceOf(std::byte* slot) noexcept
+        {
+            return *reinterpret_cast<std::atomic<std::uint64_t>*>(slot);
         }
     };
+
+    static_assert(sizeof(RingBuffer) == 256, "The layout must match NativeRingBuffer.java.");
+
+    /**
+     * Asynchronous callbacks
+     */
+
+    // The native side of com.github.novelrt.fumocement.AsyncCallbackQueue: a multi-producer ring buffer
+    // whose messages are the arguments of callbacks. Events are dropped when the queue is full.
+    using AsyncCallbackQueue = RingBuffer;
+
+    // A callback that queues its arguments into the AsyncCallbackQueue given as its context.
+    //
+    // Example: setContactCallback(world, &FumoCement::enqueueCallback<b2Body*, float>, queue);
+    template<typename... Args> void enqueueCallback(Args... args, void* context) noexcept
+    {
+        static_cast<AsyncCallbackQueue*>(context)->tryEnqueue(args...);
+    }
 } // namespace FumoCement
 
 extern "C"
@@ -817,54 +1096,6 @@ extern "C"
     }
 #pragma endregion
 
-#pragma region IndirectedPointer
-    /*
-     * Class:     com_github_novelrt_fumocement_IndirectedPointer
-     * Method:    getNativeUnderlyingHandle
-     * Signature: (J)J
-     */
-    JNIEXPORT jlong JNICALL Java_com_github_novelrt_fumocement_IndirectedPointer_getNativeUnderlyingHandle(JNIEnv*,
-                                                                                                           jclass,
-                                                                                                           jlong handle)
-    {
-        return FumoCement::toJavaPointer(*FumoCement::toNativePointer<void*>(handle));
-    }
-
-    /*
-     * Class:     com_github_novelrt_fumocement_IndirectedPointer
-     * Method:    setNativeUnderlyingHandle
-     * Signature: (JJ)V
-     */
-    JNIEXPORT void JNICALL Java_com_github_novelrt_fumocement_IndirectedPointer_setNativeUnderlyingHandle(JNIEnv*,
-                                                                                                          jclass,
-                                                                                                          jlong handle,
-                                                                                                          jlong value)
-    {
-        *FumoCement::toNativePointer<void*>(handle) = FumoCement::toNativePointer<void>(value);
-    }
-
-    /*
-     * Class:     com_github_novelrt_fumocement_IndirectedPointer
-     * Method:    createPointer
-     * Signature: ()J
-     */
-    JNIEXPORT jlong JNICALL Java_com_github_novelrt_fumocement_IndirectedPointer_createPointer(JNIEnv*, jclass)
-    {
-        return FumoCement::toJavaPointer(new void*);
-    }
-
-    /*
-     * Class:     com_github_novelrt_fumocement_IndirectedPointer
-     * Method:    destroyPointer
-     * Signature: (J)V
-     */
-    JNIEXPORT void JNICALL Java_com_github_novelrt_fumocement_IndirectedPointer_destroyPointer(JNIEnv*,
-                                                                                               jclass,
-                                                                                               jlong handle)
-    {
-        delete FumoCement::toNativePointer<void*>(handle);
-    }
-#pragma endregion
 
 #pragma region FunctionPointer
     /*
@@ -909,13 +1140,42 @@ extern "C"
 
     /*
      * Class:     com_github_novelrt_fumocement_Pointers
-     * Method:    getByteBufferLocation
+     * Method:    getByteBufferLocationRaw
      * Signature: (Ljava/nio/ByteBuffer;)J
      */
-    JNIEXPORT jlong JNICALL Java_com_github_novelrt_fumocement_Pointers_getByteBufferLocation(JNIEnv* env, jclass, jobject buffer)
+    JNIEXPORT jlong JNICALL Java_com_github_novelrt_fumocement_Pointers_getByteBufferLocationRaw(JNIEnv* env,
+                                                                                                jclass,
+                                                                                                jobject buffer)
     {
         return FumoCement::toJavaPointer(env->GetDirectBufferAddress(buffer));
     }
+
+    /*
+     * Class:     com_github_novelrt_fumocement_Pointers
+     * Method:    newDirectByteBufferRaw
+     * Signature: (JJ)Ljava/nio/ByteBuffer;
+     */
+    JNIEXPORT jobject JNICALL Java_com_github_novelrt_fumocement_Pointers_newDirectByteBufferRaw(JNIEnv* env,
+                                                                                               jclass,
+                                                                                               jlong address,
+                                                                                               jlong capacity)
+    {
+        return env->NewDirectByteBuffer(FumoCement::toNativePointer<void>(address), capacity);
+    }
+#pragma endregion
+
+#pragma region NativeStrings
+    /*
+     * Class:     com_github_novelrt_fumocement_NativeStrings
+     * Method:    deleteStringRaw
+     * Signature: (J)V
+     */
+    JNIEXPORT void JNICALL Java_com_github_novelrt_fumocement_NativeStrings_deleteStringRaw(JNIEnv*,
+                                                                                          jclass,
+                                                                                          jlong address)
+    {
+        delete[] FumoCement::toNativePointer<char>(address);
+    }
 #pragma endregion
 }
 
@@ -0,0 +1,275 @@
+// Copyright © Matt Jones and Contributors. Licensed under the MIT License (MIT). See LICENCE.md in the repository root for more information.
+
+package com.github.novelrt.fumocement.processor;
+
+import com.github.novelrt.fumocement.layout.CType;
+import com.github.novelrt.fumocement.layout.NativeField;
+import com.github.novelrt.fumocement.layout.NativeStruct;
+import com.github.novelrt.fumocement.layout.StructLayoutArranger;
+import com.github.novelrt.fumocement.layout.TypeLayout;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Generates accessor classes for the classes annotated with {@link NativeStruct}.
+ * <p>
+ * The layouts are computed using {@link StructLayoutArranger}, once for the LP64 data model and once for the
+ * LLP64 data model. The generated constants pick one of both values depending on the size of a
+ * C {@code long} on the current platform, which is known once the accessor class is initialized,
+ * so the JIT compiler can treat them as constants.
+ */
+@SupportedAnnotationTypes({
+        "com.github.novelrt.fumocement.layout.NativeStruct",
+        "com.github.novelrt.fumocement.layout.NativeField"
+})
+public final class NativeStructProcessor extends AbstractProcessor {
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(NativeStruct.class)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                error("Only classes can be annotated with @NativeStruct.", element);
+                continue;
+            }
+            processStruct((TypeElement) element);
+        }
+        // Fields are read along with their struct, but would be silently ignored outside of one.
+        for (Element element : roundEnv.getElementsAnnotatedWith(NativeField.class)) {
+            if (element.getEnclosingElement().getAnnotation(NativeStruct.class) == null) {
+                error("A @NativeField must be declared in a class annotated with @NativeStruct.", element);
+            }
+        }
+        return true;
+    }
+
+    private void processStruct(TypeElement declaration) {
+        List<StructField> fields = new ArrayList<>();
+        StructLayoutArranger lp64 = DataModel.LP64.newArranger();
+        StructLayoutArranger llp64 = DataModel.LLP64.newArranger();
+        boolean valid = true;
+
+        for (Element member : declaration.getEnclosedElements()) {
+            NativeField nativeField = member.getAnnotation(NativeField.class);
+            if (nativeField == null || member.getKind() != ElementKind.FIELD) {
+                continue;
+            }
+
+            CType type = nativeField.value();
+            if (member.asType().getKind() != javaTypeKindOf(type)) {
+                error("A field of type " + type + " must be declared with the Java type " +
+                      javaTypeKindOf(type).name().toLowerCase() + ".", member);
+                valid = false;
+                continue;
+            }
+            if (nativeField.count() < 1) {
+                error("Invalid element count: " + nativeField.count(), member);
+                valid = false;
+                continue;
+            }
+
+            fields.add(new StructField(((VariableElement) member).getSimpleName().toString(), type,
+                    nativeField.count(),
+                    lp64.addField(DataModel.LP64.layoutOf(type, nativeField.count())),
+                    llp64.addField(DataModel.LLP64.layoutOf(type, nativeField.count()))));
+        }
+
+        if (fields.isEmpty()) {
+            error("A @NativeStruct must have at least one @NativeField.", declaration);
+            valid = false;
+        }
+        if (!valid) {
+            return;
+        }
+
+        String packageName = processingEnv.getElementUtils().getPackageOf(declaration).getQualifiedName().toString();
+        String className = declaration.getAnnotation(NativeStruct.class).value();
+        if (className.isEmpty()) {
+            className = declaration.getSimpleName() + "Accessor";
+        }
+
+        String source = generate(declaration, packageName, className, fields, lp64.completeStruct(),
+                llp64.completeStruct());
+        String qualifiedName = packageName.isEmpty() ? className : packageName + "." + className;
+        try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, declaration).openWriter()) {
+            writer.write(source);
+        } catch (IOException e) {
+            error("Cannot write " + qualifiedName + ": " + e.getMessage(), declaration);
+        }
+    }
+
+    private static String generate(TypeElement declaration,
+                                   String packageName,
+                                   String className,
+                                   List<StructField> fields,
+                                   TypeLayout lp64Struct,
+                                   TypeLayout llp64Struct) {
+        StringBuilder source = new StringBuilder();
+        source.append("// Generated by the FumoCement annotation processor from ")
+                .append(declaration.getQualifiedName()).append(". Do not edit.\n\n");
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("import com.github.novelrt.fumocement.Pointer;\n")
+                .append("import com.github.novelrt.fumocement.layout.NativeLayouts;\n")
+                .append("import com.github.novelrt.fumocement.memory.NativeMemory;\n")
+                .append("import com.github.novelrt.fumocement.memory.NativeMemoryAccessor;\n\n");
+        if (fields.stream().anyMatch(field -> field.count > 1)) {
+            source.append("import java.util.Objects;\n\n");
+        }
+        source.append("public final class ").append(className).append(" {\n")
+                .append("    private static final boolean LP64 = NativeLayouts.CURRENT_PLATFORM.getLong().size() == 8;\n")
+                .append("    private static final NativeMemoryAccessor ACCESSOR = NativeMemory.access();\n\n");
+
+        appendConstant(source, "public", "SIZE", lp64Struct.size(), llp64Struct.size());
+        appendConstant(source, "public", "ALIGNMENT", lp64Struct.alignment(), llp64Struct.alignment());
+        for (StructField field : fields) {
+            String constantName = toConstantName(field.name);
+            appendConstant(source, "public", constantName + "_OFFSET", field.lp64Offset, field.llp64Offset);
+            if (field.count > 1) {
+                source.append("    public static final int ").append(constantName).append("_COUNT = ")
+                        .append(field.count).append(";\n");
+                appendConstant(source, "private", constantName + "_STRIDE",
+                        DataModel.LP64.layoutOf(field.type, 1).size(),
+                        DataModel.LLP64.layoutOf(field.type, 1).size());
+            }
+        }
+
+        source.append("\n    private ").append(className).append("() {\n    }\n");
+        for (StructField field : fields) {
+            appendAccessors(source, field);
+        }
+        source.append("}\n");
+        return source.toString();
+    }
+
+    private static void appendConstant(StringBuilder source, String visibility, String name, long lp64, long llp64) {
+        source.append("    ").append(visibility).append(" static final long ").append(name).append(" = ");
+        if (lp64 == llp64) {
+            source.append(lp64);
+        } else {
+            source.append("LP64 ? ").append(lp64).append(" : ").append(llp64);
+        }
+        source.append(";\n");
+    }
+
+    private static void appendAccessors(StringBuilder source, StructField field) {
+        String javaType = javaTypeKindOf(field.type).name().toLowerCase();
+        String accessorName = accessorNameOf(field.type);
+        String propertyName = Character.toUpperCase(field.name.charAt(0)) + field.name.substring(1);
+        String constantName = toConstantName(field.name);
+
+        String address;
+        String indexParameter;
+        String indexCheck;
+        if (field.count > 1) {
+            address = "address + " + constantName + "_OFFSET + index * " + constantName + "_STRIDE";
+            indexParameter = ", int index";
+            indexCheck = "        Objects.checkIndex(index, " + constantName + "_COUNT);\n";
+        } else {
+            address = "address + " + constantName + "_OFFSET";
+            indexParameter = "";
+            indexCheck = "";
+        }
+
+        source.append("\n    public static ").append(javaType).append(" get").append(propertyName)
+                .append("(@Pointer long address").append(indexParameter).append(") {\n")
+                .append(indexCheck)
+                .append("        return ACCESSOR.get").append(accessorName).append("(").append(address).append(");\n")
+                .append("    }\n");
+        source.append("\n    public static void set").append(propertyName)
+                .append("(@Pointer long address").append(indexParameter).append(", ").append(javaType)
+                .append(" value) {\n")
+                .append(indexCheck)
+                .append("        ACCESSOR.put").append(accessorName).append("(").append(address).append(", value);\n")
+                .append("    }\n");
+    }
+
+    private static TypeKind javaTypeKindOf(CType type) {
+        return switch (type) {
+            case BOOL -> TypeKind.BOOLEAN;
+            case CHAR -> TypeKind.BYTE;
+            case SHORT -> TypeKind.SHORT;
+            case INT -> TypeKind.INT;
+            case LONG, LONG_LONG, POINTER -> TypeKind.LONG;
+            case FLOAT -> TypeKind.FLOAT;
+            case DOUBLE -> TypeKind.DOUBLE;
+        };
+    }
+
+    private static String accessorNameOf(CType type) {
+        return switch (type) {
+            case BOOL -> "CBool";
+            case CHAR -> "CChar";
+            case SHORT -> "CShort";
+            case INT -> "CInt";
+            case LONG -> "CLong";
+            case LONG_LONG -> "CLongLong";
+            case FLOAT -> "CFloat";
+            case DOUBLE -> "CDouble";
+            case POINTER -> "Address";
+        };
+    }
+
+    private static String toConstantName(String fieldName) {
+        // someField -> SOME_FIELD
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < fieldName.length(); i++) {
+            char c = fieldName.charAt(i);
+            if (Character.isUpperCase(c) && i != 0 && !Character.isUpperCase(fieldName.charAt(i - 1))) {
+                name.append('_');
+            }
+            name.append(Character.toUpperCase(c));
+        }
+        return name.toString();
+    }
+
+    private void error(String message, Element element) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    /**
+     * The data models supported by the generated classes.
+     */
+    private enum DataModel {
+        LP64(true),
+        LLP64(false);
+
+        private final boolean lp64;
+
+        DataModel(boolean lp64) {
+            this.lp64 = lp64;
+        }
+
+        StructLayoutArranger newArranger() {
+            // NativeLayouts can't be used here: its initialization fails when the compiler runs on a platform
+            // that FumoCement doesn't support.
+            return StructLayoutArranger.withoutNativeLayouts();
+        }
+
+        TypeLayout layoutOf(CType type, int count) {
+            TypeLayout layout = type.get64BitLayout(lp64);
+            return new TypeLayout(layout.size() * count, layout.alignment());
+        }
+    }
+
+    private record StructField(String name, CType type, int count, long lp64Offset, long llp64Offset) {
+    }
+}
@@ -0,0 +1,173 @@
+// Copyright © Matt Jones and Contributors. Licensed under the MIT License (MIT). See LICENCE.md in the repository root for more information.
+
+package com.github.novelrt.fumocement;
+
+import com.github.novelrt.fumocement.memory.NativeMemory;
+import com.github.novelrt.fumocement.memory.NativeRingBuffer;
+
+import java.util.function.LongConsumer;
+
+/**
+ * A queue of callback events written by native threads into native memory, and dispatched in batches by Java.
+ * <p>
+ * Instead of calling back into Java for each event, like a {@link FunctionPointer} does, native code writes the
+ * arguments of the callback into a multi-producer {@link NativeRingBuffer}, without ever entering the JVM.
+ * A Java thread then calls {@link #drain()}, for instance once per frame, to give every queued event to its
+ * {@link Dispatcher}, which reads the arguments and calls the Java callback. Only callbacks that return {@code void} can be queued.
+ * <p>
+ * On the native side, the queue is a {@code FumoCement::AsyncCallbackQueue*}, given by {@link #getHandle()},
+ * and is used as the {@code void*} context of the callback with {@code FumoCement::enqueueCallback<Args...>}
+ * as the function pointer. The arguments of an event are laid out like the fields of a C struct declared in the
+ * same order, so their offsets can be computed with a {@link com.github.novelrt.fumocement.layout.StructLayoutArranger}.
+ * When the queue is full, events are dropped and counted, as native threads never wait for Java.
+ * <p>
+ * <b>Example:</b>
+ * <pre>{@code AsyncCallbackQueue<ContactListener> contacts = new AsyncCallbackQueue<>(listener,
+ *     (callback, event) -> callback.onContact(ACCESSOR.getAddress(event), ACCESSOR.getFloat(event + 8)),
+ *     4096, CONTACT_EVENT_SIZE);
+ * // The native binding calls setContactCallback(world, &FumoCement::enqueueCallback<b2Body*, float>, queue).
+ * setContactCallback(world, contacts.getHandle());
+ * while (running) {
+ *   stepWorld(world);
+ *   contacts.drain();
+ * }
+ * }</pre>
+ * Native code must stop enqueuing events before the queue is deleted.
+ *
+ * @param <C> the type of the callback
+ */
+public final class AsyncCallbackQueue<C> extends NativeObject {
+    private final C callback;
+    private final Dispatcher<? super C> dispatcher;
+    private final long eventSize;
+    // A view of the native memory owned by this queue.
+    private final NativeRingBuffer ring;
+    private final LongConsumer handler;
+
+    /**
+     * Creates a new queue, whose native memory is freed once garbage collected.
+     *
+     * @param callback   the callback given to the dispatcher
+     * @param dispatcher the dispatcher reading the events and calling the callback
+     * @param capacity   the maximum number of queued events, which must be a power of two
+     * @param eventSize  the size of the arguments of an event
+     * @throws IllegalArgumentException      when the capacity or the event size is invalid
+     * @throws UnsupportedOperationException when the {@link com.github.novelrt.fumocement.memory.NativeMemoryAccessor}
+     *                                       doesn't support atomic operations
+     */
+    public AsyncCallbackQueue(C callback, Dispatcher<? super C> dispatcher, int capacity, long eventSize) {
+        this(callback, dispatcher, capacity, eventSize, DisposalMethod.GARBAGE_COLLECTED);
+    }
+
+    /**
+     * Creates a new queue with the given {@link DisposalMethod}.
+     *
+     * @param callback       the callback given to the dispatcher
+     * @param dispatcher     the dispatcher reading the events and calling the callback
+     * @param capacity       the maximum number of queued events, which must be a power of two
+     * @param eventSize      the size of the arguments of an event
+     * @param disposalMethod the disposal method to use
+     * @throws IllegalArgumentException      when the capacity or the event size is invalid
+     * @throws UnsupportedOperationException when the {@link com.github.novelrt.fumocement.memory.NativeMemoryAccessor}
+     *                                       doesn't support atomic operations
+     */
+    public AsyncCallbackQueue(C callback,
+                              Dispatcher<? super C> dispatcher,
+                              int capacity,
+                              long eventSize,
+                              DisposalMethod disposalMethod) {
+        super(allocateQueue(capacity, eventSize), true, disposalMethod, NativeMemory.freeMemoryDeleter());
+        this.callback = callback;
+        this.dispatcher = dispatcher;
+        this.eventSize = eventSize;
+        this.ring = new NativeRingBuffer(super.getHandle());
+        this.handler = event -> dispatcher.dispatch(callback, event);
+    }
+
+    private static long allocateQueue(int capacity, long eventSize) {
+        // Native threads claim slots concurrently, which needs atomic operations.
+        if (!NativeMemory.access().canAccessAtomically()) {
+            throw new UnsupportedOperationException("Cannot create an AsyncCallbackQueue without atomic operations.");
+        }
+        long address = NativeMemory.access().allocateMemory(NativeRingBuffer.sizeOf(capacity, eventSize));
+        NativeRingBuffer.initialize(address, capacity, eventSize, NativeRingBuffer.ProducerMode.MULTIPLE);
+        return address;
+    }
+
+    public C getCallback() {
+        return callback;
+    }
+
+    public int getCapacity() {
+        return ring.getCapacity();
+    }
+
+    public long getEventSize() {
+        return eventSize;
+    }
+
+    /**
+     * Gets the number of events dropped because the queue was full.
+     *
+     * @return the number of dropped events
+     */
+    public long getDroppedCount() {
+        getHandle();
+        return ring.getDroppedCount();
+    }
+
+    /**
+     * Gets an estimate of the number of events waiting to be dispatched.
+     *
+     * @return the number of queued events
+     */
+    public int getPendingCount() {
+        getHandle();
+        return ring.getPendingCount();
+    }
+
+    /**
+     * Dispatches every event currently in the queue.
+     *
+     * @return the number of dispatched events
+     */
+    public int drain() {
+        return drain(ring.getCapacity());
+    }
+
+    /**
+     * Dispatches up to {@code maxEvents} events, in the order they were queued. Events queued while draining
+     * may be dispatched too. If the dispatcher throws an exception, the event is still removed from the queue.
+     * <p>
+     * Events must only be drained by one thread at a time.
+     *
+     * @param maxEvents the maximum number of events to dispatch
+     * @return the number of dispatched events
+     */
+    public int drain(int maxEvents) {
+        // Fails if the queue has been deleted, as the ring buffer view can't know it.
+        getHandle();
+        return ring.drain(handler, maxEvents);
+    }
+
+    @Override
+    public @Pointer("FumoCement::AsyncCallbackQueue*") long getHandle() {
+        return super.getHandle();
+    }
+
+    /**
+     * Reads the arguments of an event and calls the callback with them.
+     *
+     * @param <C> the type of the callback
+     */
+    @FunctionalInterface
+    public interface Dispatcher<C> {
+        /**
+         * Dispatches an event.
+         *
+         * @param callback the callback of the queue
+         * @param event    the address of the arguments of the event, which is only valid during this call
+         */
+        void dispatch(C callback, @Pointer long event);
+    }
+}
@@ -0,0 +1,186 @@
+// Copyright © Matt Jones and Contributors. Licensed under the MIT License (MIT). See LICENCE.md in the repository root for more information.
+
+package com.github.novelrt.fumocement;
+
+import com.github.novelrt.fumocement.HandleReferenceTable.HandleTrackingWeakReference;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A thread-safe variant of {@link NativeObjectTracker}, meant to be shared between threads
+ * resolving native handles concurrently.
+ * <p>
+ * The handles are spread across multiple segments, each one being guarded by its own lock.
+ * Looking up an object that is already tracked does not take any lock. When the object has to be
+ * created, the lock of the segment is held while creating it, so two threads asking for the same
+ * handle at the same time always receive the same instance.
+ * <p>
+ * Garbage collected objects are removed by one thread at a time, segment by segment, so
+ * cleaning the tracker never blocks the lookups.
+ *
+ * @param <T> the type of {@link NativeObject} this tracker contains
+ * @see NativeObjectTracker
+ */
+public final class ConcurrentNativeObjectTracker<T extends NativeObject> {
+    private static final int DEFAULT_SEGMENT_COUNT = 16;
+
+    private final ReferenceQueue<? super T> referenceQueue = new ReferenceQueue<>();
+    private final AtomicBoolean cleaning = new AtomicBoolean();
+    private final Segment<T>[] segments;
+    private final int segmentMask;
+
+    private final NativeObjectFactory<? extends T> factory;
+    private final NativeObjectTracker.Target target;
+
+    /**
+     * Create a new instance of {@link ConcurrentNativeObjectTracker}, with the given
+     * {@link NativeObjectFactory}, and a default number of segments.
+     *
+     * @param factory the factory used to create native objects
+     * @param target  which objects should this tracker track
+     */
+    public ConcurrentNativeObjectTracker(NativeObjectFactory<? extends T> factory,
+                                         NativeObjectTracker.Target target) {
+        this(factory, target, DEFAULT_SEGMENT_COUNT);
+    }
+
+    /**
+     * Create a new instance of {@link ConcurrentNativeObjectTracker}, with the given
+     * {@link NativeObjectFactory}, and the given minimum number of segments.
+     * <p>
+     * The number of segments is the number of threads that can create objects at the same time
+     * without waiting for each other. It is rounded up to a power of two.
+     *
+     * @param factory      the factory used to create native objects
+     * @param target       which objects should this tracker track
+     * @param segmentCount the minimum number of segments
+     * @throws IllegalArgumentException when {@code segmentCount} is not between 1 and 65536
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentNativeObjectTracker(NativeObjectFactory<? extends T> factory,
+                                         NativeObjectTracker.Target target,
+                                         int segmentCount) {
+        if (segmentCount < 1 || segmentCount > 65536) {
+            throw new IllegalArgumentException("Invalid segment count: " + segmentCount);
+        }
+        int actualSegmentCount = segmentCount == 1 ? 1 : Integer.highestOneBit(segmentCount - 1) << 1;
+
+        this.factory = factory;
+        this.target = target;
+        this.segments = (Segment<T>[]) new Segment<?>[actualSegmentCount];
+        this.segmentMask = actualSegmentCount - 1;
+        for (int i = 0; i < actualSegmentCount; i++) {
+            segments[i] = new Segment<>();
+        }
+    }
+
+    /**
+     * Gets a native object that owns the given handle if this tracker is targeting
+     * owned objects ({@link NativeObjectTracker.Target#OWNED_OBJECTS}). If it is not
+     * present, the tracker will create it for use later.
+     * <p>
+     * When multiple threads call this method with the same handle, only one object is created.
+     *
+     * @param handle the native handle
+     * @return a native object of type {@code T} that owns the given handle
+     */
+    public T getOrCreate(@Pointer("T*") long handle) {
+        Segment<T> segment = segmentFor(handle);
+        T actualValue = segment.table.getReferentUnsynchronized(handle);
+        if (actualValue != null) {
+            return actualValue;
+        }
+
+        synchronized (segment) {
+            HandleTrackingWeakReference<? extends T> reference = segment.table.get(handle);
+            actualValue = reference == null ? null : reference.get();
+
+            if (actualValue == null) {
+                actualValue = factory.createInstance(handle, target.owned);
+                segment.table.put(new HandleTrackingWeakReference<>(actualValue, handle, referenceQueue));
+            }
+        }
+
+        cleanGarbageCollectedObjects();
+        return actualValue;
+    }
+
+    /**
+     * Registers this instance into the tracker.
+     *
+     * @param instance the instance to register
+     * @throws IllegalArgumentException when the resource doesn't own its resource according to
+     *                                  {@linkplain #getTarget() this tracker's target}
+     * @throws IllegalArgumentException when another instance is present in this tracker with
+     *                                  the same handle
+     */
+    public void register(T instance) {
+        if (instance.getResourceOwningState() != target.owningState) {
+            throw new IllegalArgumentException(
+                    target == NativeObjectTracker.Target.OWNED_OBJECTS ?
+                            "Cannot register this instance as does not own its resource in an owned object-targeted tracker." :
+                            "Cannot register this instance as it owns its resource in an unowned object-target tracker.");
+        }
+
+        long handle = instance.getHandle();
+        Segment<T> segment = segmentFor(handle);
+        synchronized (segment) {
+            HandleTrackingWeakReference<? extends T> existingValue = segment.table.get(handle);
+            if (existingValue != null && existingValue.get() != null) {
+                throw new IllegalArgumentException("Cannot register this instance as another instance is present " +
+                                                   "with the same handle.");
+            }
+
+            segment.table.put(new HandleTrackingWeakReference<>(instance, handle, referenceQueue));
+        }
+
+        cleanGarbageCollectedObjects();
+    }
+
+    /**
+     * Gets the target of this tracker.
+     *
+     * @return the target of this tracker
+     */
+    public NativeObjectTracker.Target getTarget() {
+        return target;
+    }
+
+    private Segment<T> segmentFor(long handle) {
+        // The tables use the high bits of a multiplicative hash, so the segment has to be
+        // chosen using unrelated bits: we use the low bits of the MurmurHash3 finalizer.
+        long hash = handle;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        return segments[(int) hash & segmentMask];
+    }
+
+    private void cleanGarbageCollectedObjects() {
+        // Only one thread cleans the tracker at a time, the others just carry on.
+        if (!cleaning.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            Reference<?> reference;
+            while ((reference = referenceQueue.poll()) != null) {
+                HandleTrackingWeakReference<?> handleReference = (HandleTrackingWeakReference<?>) reference;
+                Segment<T> segment = segmentFor(handleReference.getHandle());
+                synchronized (segment) {
+                    // This does nothing if the handle has been associated to a newer object since then.
+                    segment.table.remove(handleReference);
+                }
+            }
+        } finally {
+            cleaning.set(false);
+        }
+    }
+
+    private static final class Segment<T> {
+        // Guarded by the segment's monitor, except for getReferentUnsynchronized.
+        final HandleReferenceTable<T> table = new HandleReferenceTable<>();
+    }
+}
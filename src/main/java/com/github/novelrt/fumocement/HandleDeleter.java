@@ -4,6 +4,12 @@ package com.github.novelrt.fumocement;
 
 /**
  * Cleans native resources using a given handle.
+ * <p>
+ * When objects are released by the {@link HandleReleasePipeline}, their handles are grouped by deleter
+ * and given to {@link #deleteHandles(long[], int)}. Deleters that can release multiple handles at once,
+ * for instance with a single native call, should override it. In order for handles to be grouped,
+ * objects sharing a deleter must use the same instance: a bound method reference creates a new instance
+ * each time it is evaluated, so it should be stored in a field.
  */
 @FunctionalInterface
 public interface HandleDeleter {
@@ -13,4 +19,18 @@ public interface HandleDeleter {
      * @param handle the native handle
      */
     void deleteHandle(@Pointer long handle);
+
+    /**
+     * Cleans any native resources associated to the first {@code count} handles of the given array.
+     * <p>
+     * The default implementation calls {@link #deleteHandle(long)} for each handle.
+     *
+     * @param handles the native handles
+     * @param count   the number of handles to delete
+     */
+    default void deleteHandles(@Pointer long[] handles, int count) {
+        for (int i = 0; i < count; i++) {
+            deleteHandle(handles[i]);
+        }
+    }
 }
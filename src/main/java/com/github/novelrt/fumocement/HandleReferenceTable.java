@@ -0,0 +1,209 @@
+// Copyright © Matt Jones and Contributors. Licensed under the MIT License (MIT). See LICENCE.md in the repository root for more information.
+
+package com.github.novelrt.fumocement;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+/**
+ * An open-addressing hash table mapping native handles to weak references, without boxing
+ * the handles.
+ * <p>
+ * Handles are stored in a {@code long[]} next to a reference array, using linear probing and
+ * backward-shift deletion, so there are no tombstones to clean up. The table never holds more
+ * than one entry per two slots, which keeps the probe sequences short and the memory footprint
+ * at about {@code 2 * (8 + reference size)} bytes per entry, plus the reference itself.
+ * <p>
+ * This class is not thread-safe, with the exception of {@link #getReferentUnsynchronized(long)}.
+ *
+ * @param <T> the type of the referenced objects
+ */
+final class HandleReferenceTable<T> {
+    private static final int MINIMUM_CAPACITY = 16;
+
+    private long[] handles;
+    private HandleTrackingWeakReference<? extends T>[] references;
+    private int size;
+    private int shift;
+
+    HandleReferenceTable() {
+        allocate(MINIMUM_CAPACITY);
+    }
+
+    /**
+     * Gets the reference associated to the given handle.
+     *
+     * @param handle the native handle
+     * @return the reference associated to the handle, or {@code null} if there is none
+     */
+    @Nullable HandleTrackingWeakReference<? extends T> get(@Pointer long handle) {
+        long[] handles = this.handles;
+        HandleTrackingWeakReference<? extends T>[] references = this.references;
+        int mask = handles.length - 1;
+
+        for (int i = indexOf(handle, shift); ; i = (i + 1) & mask) {
+            HandleTrackingWeakReference<? extends T> reference = references[i];
+            if (reference == null) {
+                return null;
+            }
+            if (handles[i] == handle) {
+                return reference;
+            }
+        }
+    }
+
+    /**
+     * Gets the object referenced by the given handle without requiring any synchronization
+     * with the writers of this table.
+     * <p>
+     * This method only reads the reference array, and checks the handle stored inside the
+     * references themselves, so it never returns an object associated with another handle.
+     * However, it can spuriously return {@code null} when the table is being modified concurrently:
+     * callers must then fall back to {@link #get(long)} while holding the lock guarding the writes.
+     *
+     * @param handle the native handle
+     * @return the referenced object, or {@code null} if it was not found
+     */
+    @Nullable T getReferentUnsynchronized(@Pointer long handle) {
+        HandleTrackingWeakReference<? extends T>[] references = this.references;
+        int mask = references.length - 1;
+        int shift = Long.numberOfLeadingZeros(mask);
+
+        int i = indexOf(handle, shift);
+        for (int probes = 0; probes < references.length; probes++, i = (i + 1) & mask) {
+            HandleTrackingWeakReference<? extends T> reference = references[i];
+            if (reference == null) {
+                return null;
+            }
+            if (reference.getHandle() == handle) {
+                return reference.get();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Associates the given reference to its handle, replacing any previous reference.
+     *
+     * @param reference the reference to put
+     */
+    void put(HandleTrackingWeakReference<? extends T> reference) {
+        if ((size + 1) * 2 > handles.length) {
+            resize(handles.length * 2);
+        }
+        if (insert(reference)) {
+            size++;
+        }
+    }
+
+    /**
+     * Removes the given reference from the table. Nothing happens if the handle of the
+     * reference is now associated to another reference.
+     *
+     * @param reference the reference to remove
+     */
+    void remove(HandleTrackingWeakReference<?> reference) {
+        long handle = reference.getHandle();
+        int mask = handles.length - 1;
+
+        for (int i = indexOf(handle, shift); ; i = (i + 1) & mask) {
+            HandleTrackingWeakReference<? extends T> existing = references[i];
+            if (existing == null) {
+                return;
+            }
+            if (handles[i] == handle) {
+                if (existing == reference) {
+                    deleteSlot(i);
+                    size--;
+                    if (size * 8 < handles.length && handles.length > MINIMUM_CAPACITY) {
+                        resize(handles.length / 2);
+                    }
+                }
+                return;
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    private boolean insert(HandleTrackingWeakReference<? extends T> reference) {
+        long handle = reference.getHandle();
+        int mask = handles.length - 1;
+
+        for (int i = indexOf(handle, shift); ; i = (i + 1) & mask) {
+            if (references[i] == null) {
+                handles[i] = handle;
+                references[i] = reference;
+                return true;
+            }
+            if (handles[i] == handle) {
+                references[i] = reference;
+                return false;
+            }
+        }
+    }
+
+    private void deleteSlot(int slot) {
+        // Backward-shift deletion: move back any entry that would become unreachable
+        // because of the hole we are creating.
+        int mask = handles.length - 1;
+        int hole = slot;
+        for (int i = (slot + 1) & mask; references[i] != null; i = (i + 1) & mask) {
+            int ideal = indexOf(handles[i], shift);
+            // Move the entry if its ideal slot is not between the hole (exclusive) and itself (inclusive).
+            if (((i - ideal) & mask) >= ((i - hole) & mask)) {
+                handles[hole] = handles[i];
+                references[hole] = references[i];
+                hole = i;
+            }
+        }
+        handles[hole] = 0;
+        references[hole] = null;
+    }
+
+    private void resize(int capacity) {
+        HandleTrackingWeakReference<? extends T>[] oldReferences = references;
+        allocate(capacity);
+        for (HandleTrackingWeakReference<? extends T> reference : oldReferences) {
+            if (reference != null) {
+                insert(reference);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void allocate(int capacity) {
+        handles = new long[capacity];
+        references = (HandleTrackingWeakReference<? extends T>[]) new HandleTrackingWeakReference<?>[capacity];
+        shift = Long.numberOfLeadingZeros(capacity - 1);
+    }
+
+    private static int indexOf(long handle, int shift) {
+        // Fibonacci hashing: handles are aligned pointers, so the low bits are mostly zeroes,
+        // and we need the high bits of the product.
+        return (int) ((handle * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    /**
+     * A weak reference remembering the handle of its referent, so the table entry
+     * can be removed once the referent has been garbage collected.
+     *
+     * @param <T> the type of the referent
+     */
+    static final class HandleTrackingWeakReference<T> extends WeakReference<T> {
+        private final long handle;
+
+        HandleTrackingWeakReference(T referent, long handle, ReferenceQueue<? super T> q) {
+            super(referent, q);
+            this.handle = handle;
+        }
+
+        long getHandle() {
+            return handle;
+        }
+    }
+}
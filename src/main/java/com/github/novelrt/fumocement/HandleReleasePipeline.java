@@ -0,0 +1,233 @@
+// Copyright © Matt Jones and Contributors. Licensed under the MIT License (MIT). See LICENCE.md in the repository root for more information.
+
+package com.github.novelrt.fumocement;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Releases the handles of garbage collected {@link NativeObject}s in batches, on dedicated worker threads.
+ * <p>
+ * By default, the handles of garbage collected objects are deleted one by one, on the thread of the
+ * {@link java.lang.ref.Cleaner} used by {@link NativeObject}. When many objects are collected at once,
+ * for instance after unloading a level, this single thread can fall far behind.
+ * <p>
+ * When the pipeline is enabled, the cleaner thread only appends the handles to a batch per {@link HandleDeleter},
+ * and full batches are given to {@link HandleDeleter#deleteHandles(long[], int)} by the worker threads.
+ * Incomplete batches are released once no other batch is waiting.
+ * <p>
+ * The pipeline is configured using these system properties:
+ * <ul>
+ *     <li>{@code novelrt.fumocement.release.threads}: the number of worker threads, {@code 0} by default,
+ *     which disables the pipeline</li>
+ *     <li>{@code novelrt.fumocement.release.batchSize}: the maximum number of handles in a batch,
+ *     {@code 256} by default</li>
+ * </ul>
+ * Objects closed manually, and objects with additional {@link NativeObject.DeletionState}s, are always
+ * released immediately.
+ */
+public final class HandleReleasePipeline {
+    private static final HandleReleasePipeline DEFAULT = new HandleReleasePipeline(
+            Integer.getInteger("novelrt.fumocement.release.threads", 0),
+            Integer.getInteger("novelrt.fumocement.release.batchSize", 256));
+
+    // Flush the pending batches when too many deleters are involved, so the map stays small.
+    private static final int MAX_PENDING_DELETERS = 64;
+    private static final long IDLE_FLUSH_DELAY_MILLIS = 20;
+
+    private final int threadCount;
+    private final int batchSize;
+    private final BlockingQueue<Batch> readyBatches = new LinkedBlockingQueue<>();
+    private final AtomicLong pendingHandleCount = new AtomicLong();
+    // Guarded by itself.
+    private final Map<HandleDeleter, Batch> pendingBatches = new IdentityHashMap<>();
+
+    HandleReleasePipeline(int threadCount, int batchSize) {
+        if (threadCount < 0) {
+            throw new IllegalArgumentException("Invalid release thread count: " + threadCount);
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Invalid release batch size: " + batchSize);
+        }
+        this.threadCount = threadCount;
+        this.batchSize = batchSize;
+        for (int i = 0; i < threadCount; i++) {
+            Thread worker = new Thread(this::runWorker, "FumoCement Handle Release #" + i);
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    /**
+     * Gets the pipeline used to release garbage collected {@link NativeObject}s.
+     *
+     * @return the default pipeline
+     */
+    public static HandleReleasePipeline getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Gets whether this pipeline has worker threads. When it doesn't, handles are deleted immediately.
+     *
+     * @return {@code true} if the handles are released by worker threads
+     */
+    public boolean isEnabled() {
+        return threadCount > 0;
+    }
+
+    /**
+     * Gets the number of worker threads of this pipeline.
+     *
+     * @return the number of worker threads
+     */
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * Gets the maximum number of handles given at once to a {@link HandleDeleter}.
+     *
+     * @return the maximum size of a batch
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Gets how many handles have been submitted but not deleted yet.
+     *
+     * @return the number of handles waiting to be deleted
+     */
+    public long getPendingHandleCount() {
+        return pendingHandleCount.get();
+    }
+
+    /**
+     * Gets how many full batches are waiting for a worker thread.
+     *
+     * @return the number of batches waiting to be deleted
+     */
+    public int getReadyBatchCount() {
+        return readyBatches.size();
+    }
+
+    /**
+     * Submits a handle to delete using the given {@link HandleDeleter}.
+     * <p>
+     * When the pipeline is disabled, the handle is deleted immediately on the calling thread.
+     *
+     * @param handleDeleter the {@link HandleDeleter} to use
+     * @param handle        the native handle
+     */
+    public void submit(HandleDeleter handleDeleter, @Pointer long handle) {
+        if (!isEnabled()) {
+            handleDeleter.deleteHandle(handle);
+            return;
+        }
+
+        pendingHandleCount.incrementAndGet();
+        Batch fullBatch = null;
+        synchronized (pendingBatches) {
+            Batch batch = pendingBatches.get(handleDeleter);
+            if (batch == null) {
+                if (pendingBatches.size() == MAX_PENDING_DELETERS) {
+                    flushPendingBatches();
+                }
+                batch = new Batch(handleDeleter, batchSize);
+                pendingBatches.put(handleDeleter, batch);
+            }
+            batch.handles[batch.count++] = handle;
+            if (batch.count == batchSize) {
+                pendingBatches.remove(handleDeleter);
+                fullBatch = batch;
+            }
+        }
+
+        if (fullBatch != null) {
+            readyBatches.add(fullBatch);
+        }
+    }
+
+    /**
+     * Deletes all the submitted handles, using the calling thread to help the worker threads,
+     * and waits until no handle is pending.
+     * <p>
+     * Handles submitted by other threads in the meantime are waited for as well.
+     *
+     * @throws InterruptedException when the calling thread is interrupted while waiting
+     */
+    public void flush() throws InterruptedException {
+        if (!isEnabled()) {
+            return;
+        }
+
+        synchronized (pendingBatches) {
+            flushPendingBatches();
+        }
+        Batch batch;
+        while ((batch = readyBatches.poll()) != null) {
+            release(batch);
+        }
+        synchronized (this) {
+            while (pendingHandleCount.get() != 0) {
+                wait();
+            }
+        }
+    }
+
+    private void flushPendingBatches() {
+        // The caller must hold the pendingBatches lock.
+        readyBatches.addAll(pendingBatches.values());
+        pendingBatches.clear();
+    }
+
+    private void runWorker() {
+        while (true) {
+            try {
+                Batch batch = readyBatches.poll(IDLE_FLUSH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+                if (batch != null) {
+                    release(batch);
+                } else {
+                    // Nothing is ready, so the cleaner is probably done for now: release what's left.
+                    synchronized (pendingBatches) {
+                        flushPendingBatches();
+                    }
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void release(Batch batch) {
+        try {
+            batch.deleter.deleteHandles(batch.handles, batch.count);
+        } catch (Throwable e) {
+            // Like the Cleaner, keep going, but don't hide the failure.
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        } finally {
+            if (pendingHandleCount.addAndGet(-batch.count) == 0) {
+                synchronized (this) {
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    private static final class Batch {
+        final HandleDeleter deleter;
+        final long[] handles;
+        int count;
+
+        Batch(HandleDeleter deleter, int capacity) {
+            this.deleter = deleter;
+            this.handles = new long[capacity];
+        }
+    }
+}
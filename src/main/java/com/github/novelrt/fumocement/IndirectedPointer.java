@@ -2,6 +2,8 @@
 
 package com.github.novelrt.fumocement;
 
+import com.github.novelrt.fumocement.memory.NativeMemory;
+import com.github.novelrt.fumocement.memory.NativeMemoryAccessor;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.Objects;
@@ -15,9 +17,12 @@ import java.util.Objects;
  * that consumes the underlying handle without owning it.
  *
  * @param <T> the native object type that this double pointer contains
- * @implNote Under the hood, this class allocates a {@code void**}.
+ * @implNote Under the hood, this class allocates a {@code void**}, initially null, which is read and written
+ * through the {@link NativeMemoryAccessor} without any JNI call.
  */
 public final class IndirectedPointer<T extends NativeObject> extends NativeObject {
+    private static final NativeMemoryAccessor ACCESSOR = NativeMemory.access();
+
     private final NativeObjectProvider<T> provider;
 
     private @Pointer("T*") long lastUnderlyingHandle;
@@ -45,24 +50,15 @@ public final class IndirectedPointer<T extends NativeObject> extends NativeObjec
      * @throws NullPointerException when {@code provider} is null
      */
     public IndirectedPointer(NativeObjectProvider<T> provider, DisposalMethod disposalMethod) {
-        super(createPointer(), true, disposalMethod, IndirectedPointer::destroyPointer);
+        super(createPointer(), true, disposalMethod, NativeMemory.freeMemoryDeleter());
         this.provider = Objects.requireNonNull(provider);
     }
 
-    // For now, these are implemented in the methods generated by ClangSharp
-    // fork. Maybe that we can do something like a separate C++ library,
-    // but this will induce much more work as one has to create a CMake project,
-    // make sure it works on Windows, Linux, Mac, Android, etc. Then, you
-    // must somehow package the dll/so/dylib in the jar and also somehow load
-    // it, as it must be loaded from a file. So yeah, it's a pain.
-
-    private static native long getNativeUnderlyingHandle(long handle);
-
-    private static native void setNativeUnderlyingHandle(long handle, long value);
-
-    private static native long createPointer();
-
-    private static native void destroyPointer(long handle);
+    private static long createPointer() {
+        long handle = ACCESSOR.allocateMemory(Pointers.UINTPTR_T_SIZE);
+        ACCESSOR.putAddress(handle, Pointers.NULLPTR);
+        return handle;
+    }
 
     /**
      * {@inheritDoc}
@@ -79,7 +75,7 @@ public final class IndirectedPointer<T extends NativeObject> extends NativeObjec
      * or {@code null} if the pointer is null
      */
     public @Nullable T get() {
-        long underlyingHandle = getNativeUnderlyingHandle(getHandle());
+        long underlyingHandle = ACCESSOR.getAddress(getHandle());
         if (lastUnderlyingHandle != underlyingHandle) {
             lastUnderlyingHandle = underlyingHandle;
 
@@ -99,7 +95,7 @@ public final class IndirectedPointer<T extends NativeObject> extends NativeObjec
      * @return the underlying handle
      */
     public @Pointer("T*") long getUnderlyingHandle() {
-        return getNativeUnderlyingHandle(getHandle());
+        return ACCESSOR.getAddress(getHandle());
     }
 
     /**
@@ -110,13 +106,13 @@ public final class IndirectedPointer<T extends NativeObject> extends NativeObjec
      * @param value the new value
      */
     public void set(@Nullable T value) {
-        setNativeUnderlyingHandle(getHandle(), value == null ? Pointers.NULLPTR : value.getHandle());
+        ACCESSOR.putAddress(getHandle(), value == null ? Pointers.NULLPTR : value.getHandle());
     }
 
     /**
      * Sets the underlying value of this double pointer to {@code null}.
      */
     public void setNull() {
-        setNativeUnderlyingHandle(getHandle(), Pointers.NULLPTR);
+        ACCESSOR.putAddress(getHandle(), Pointers.NULLPTR);
     }
 }
@@ -0,0 +1,214 @@
+// Copyright © Matt Jones and Contributors. Licensed under the MIT License (MIT). See LICENCE.md in the repository root for more information.
+
+package com.github.novelrt.fumocement;
+
+import com.github.novelrt.fumocement.builtin.IntPtrArray;
+import com.github.novelrt.fumocement.memory.NativeMemory;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Represents an array of pointers of type {@code T*}, which can be represented in C as {@code T**}
+ * or {@code T*[]}, such as an array filled by a native function listing objects.
+ * <p>
+ * Like {@link IndirectedPointer}, this class uses a {@link NativeObjectProvider} to provide native objects
+ * for the pointers of the array, without owning them. The last object provided for each element is kept,
+ * and is only provided again once the pointer of this element has changed.
+ * {@link #resolveAll()} checks every element at once, by copying all the pointers of the array in one go.
+ * <p>
+ * <b>Example:</b>
+ * <pre>{@code IndirectedPointerArray<Entity> entities = new IndirectedPointerArray<>(Entity::new, MAX_ENTITIES);
+ * int count = getVisibleEntities(scene, entities.getHandle(), MAX_ENTITIES);
+ * entities.resolveAll();
+ * for (int i = 0; i < count; i++) {
+ *   Entity entity = entities.getResolved(i);
+ *   // ...
+ * }
+ * }</pre>
+ * This class is not thread-safe.
+ *
+ * @param <T> the native object type of the elements of this array
+ */
+public final class IndirectedPointerArray<T extends NativeObject> extends NativeObject {
+    private final NativeObjectProvider<T> provider;
+    private final int length;
+    // A view over the same memory, used to copy the pointers in bulk.
+    private final IntPtrArray pointers;
+    private final long[] lastUnderlyingHandles;
+    private final Object[] lastUnderlyingHandlesAsObjects;
+    private final long[] scratchHandles;
+
+    /**
+     * Creates a new array of {@code length} null pointers, whose native resources will be garbage collected.
+     *
+     * @param provider the native object provider to use
+     * @param length   the number of pointers in the array
+     * @throws NullPointerException     when {@code provider} is null
+     * @throws IllegalArgumentException when the length is negative
+     */
+    public IndirectedPointerArray(NativeObjectProvider<T> provider, int length) {
+        this(provider, length, DisposalMethod.GARBAGE_COLLECTED);
+    }
+
+    /**
+     * Creates a new array of {@code length} null pointers, with the given {@link DisposalMethod}.
+     *
+     * @param provider       the native object provider to use
+     * @param length         the number of pointers in the array
+     * @param disposalMethod the disposal method to use
+     * @throws NullPointerException     when {@code provider} is null
+     * @throws IllegalArgumentException when the length is negative
+     */
+    public IndirectedPointerArray(NativeObjectProvider<T> provider, int length, DisposalMethod disposalMethod) {
+        this(provider, createArray(length), length, true, disposalMethod);
+    }
+
+    /**
+     * Creates a view over an existing array of pointers, which isn't freed by this object.
+     *
+     * @param provider the native object provider to use
+     * @param address  the address of the first pointer of the array
+     * @param length   the number of pointers in the array
+     * @throws NullPointerException     when {@code provider} is null
+     * @throws IllegalArgumentException when the length is negative
+     */
+    public IndirectedPointerArray(NativeObjectProvider<T> provider, @Pointer("T**") long address, int length) {
+        this(provider, address, validateLength(length), false, DisposalMethod.MANUAL);
+    }
+
+    private IndirectedPointerArray(NativeObjectProvider<T> provider,
+                                   long address,
+                                   int length,
+                                   boolean owned,
+                                   DisposalMethod disposalMethod) {
+        super(address, owned, disposalMethod, owned ? NativeMemory.freeMemoryDeleter() : null);
+        this.provider = Objects.requireNonNull(provider);
+        this.length = length;
+        this.pointers = new IntPtrArray(address, length);
+        this.lastUnderlyingHandles = new long[length];
+        this.lastUnderlyingHandlesAsObjects = new Object[length];
+        this.scratchHandles = new long[length];
+    }
+
+    private static int validateLength(int length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("Invalid array length: " + length);
+        }
+        return length;
+    }
+
+    private static long createArray(int length) {
+        long size = validateLength(length) * IntPtrArray.ELEMENT_SIZE;
+        long address = NativeMemory.access().allocateMemory(Math.max(size, 1));
+        NativeMemory.access().zeroMemory(address, size);
+        return address;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public @Pointer("T**") long getHandle() {
+        return super.getHandle();
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Gets the element at the given index as an instance of {@code T}, which is only provided again if
+     * its pointer has changed since the last time it was resolved.
+     *
+     * @param index the index of the element
+     * @return an instance of {@code T} from the pointer at the given index, or {@code null} if it is null
+     * @throws IndexOutOfBoundsException when the index is out of the bounds of the array
+     */
+    public @Nullable T get(int index) {
+        getHandle();
+        resolve(index, pointers.get(index));
+        return getResolved(index);
+    }
+
+    /**
+     * Gets the element at the given index, as it was the last time it was resolved by {@link #get(int)} or
+     * {@link #resolveAll()}, without reading the native array.
+     *
+     * @param index the index of the element
+     * @return the last instance of {@code T} resolved for this element, or {@code null} if it was null
+     * @throws IndexOutOfBoundsException when the index is out of the bounds of the array
+     */
+    @SuppressWarnings("unchecked")
+    public @Nullable T getResolved(int index) {
+        return (T) lastUnderlyingHandlesAsObjects[index];
+    }
+
+    /**
+     * Resolves every element of the array, providing new instances of {@code T} only for the
+     * elements whose pointer has changed.
+     *
+     * @return the number of elements whose pointer has changed
+     */
+    public int resolveAll() {
+        getHandle();
+        pointers.copyTo(0, scratchHandles, 0, length);
+        int changedCount = 0;
+        for (int i = 0; i < length; i++) {
+            if (resolve(i, scratchHandles[i])) {
+                changedCount++;
+            }
+        }
+        return changedCount;
+    }
+
+    /**
+     * Gets the pointer at the given index, such as {@code T*}.
+     *
+     * @param index the index of the element
+     * @return the pointer at the given index
+     * @throws IndexOutOfBoundsException when the index is out of the bounds of the array
+     */
+    public @Pointer("T*") long getUnderlyingHandle(int index) {
+        getHandle();
+        return pointers.get(index);
+    }
+
+    /**
+     * Sets the element at the given index using the given instance of {@code T}.
+     * <p>
+     * A value of {@code null} will result in a null pointer.
+     *
+     * @param index the index of the element
+     * @param value the new value
+     * @throws IndexOutOfBoundsException when the index is out of the bounds of the array
+     */
+    public void set(int index, @Nullable T value) {
+        getHandle();
+        long handle = value == null ? Pointers.NULLPTR : value.getHandle();
+        pointers.set(index, handle);
+        lastUnderlyingHandles[index] = handle;
+        lastUnderlyingHandlesAsObjects[index] = value;
+    }
+
+    /**
+     * Sets every element of the array to {@code null}.
+     */
+    public void clear() {
+        NativeMemory.access().zeroMemory(getHandle(), length * IntPtrArray.ELEMENT_SIZE);
+        Arrays.fill(lastUnderlyingHandles, Pointers.NULLPTR);
+        Arrays.fill(lastUnderlyingHandlesAsObjects, null);
+    }
+
+    private boolean resolve(int index, long underlyingHandle) {
+        if (lastUnderlyingHandles[index] == underlyingHandle) {
+            return false;
+        }
+        lastUnderlyingHandles[index] = underlyingHandle;
+        lastUnderlyingHandlesAsObjects[index] = Pointers.isNullPointer(underlyingHandle) ?
+                null :
+                provider.provide(underlyingHandle);
+        return true;
+    }
+}
@@ -15,7 +15,7 @@ import java.util.List;
  * Native objects can be either <i>owned</i>, <i>unowned</i>, or <i>cleaned</i>.<br>
  * Owned objects have native resources under the possession of the JVM, meaning that their {@link HandleDeleter}
  * will be ran once the object gets garbage collected, thus releasing any native resources.
- * This routine is ran by a {@link Cleaner}.<br>
+ * This routine is ran by a {@link Cleaner}, or by the {@link HandleReleasePipeline} when it is enabled.<br>
  * On the other hand, unowned objects do not have any mechanism running once they
  * get garbage collected. They mainly serve as an access layer to resources managed natively.<br>
  * Finally, a cleaned object has been definitively deleted from the native space, and must not
@@ -215,7 +215,15 @@ public abstract class NativeObject implements AutoCloseable {
 
         @Override
         public void run() {
-            deleteAllNativeResources();
+            // Only called once the object has been garbage collected.
+            HandleReleasePipeline pipeline = HandleReleasePipeline.getDefault();
+            if (pipeline.isEnabled() && otherDeletionStates == null &&
+                resourceOwningState == ResourceOwningState.OWNED) {
+                resourceOwningState = ResourceOwningState.CLEARED;
+                pipeline.submit(handleDeleter, handle);
+            } else {
+                deleteAllNativeResources();
+            }
         }
 
         void addDeletionState(DeletionState deletionState) {
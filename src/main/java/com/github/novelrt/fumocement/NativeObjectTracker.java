@@ -2,11 +2,11 @@
 
 package com.github.novelrt.fumocement;
 
+import com.github.novelrt.fumocement.HandleReferenceTable.HandleTrackingWeakReference;
+
 import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
-import java.util.Map;
-import java.util.WeakHashMap;
 
 /**
  * Contains {@link NativeObject} instances based on its target:
@@ -18,12 +18,19 @@ import java.util.WeakHashMap;
  * This acts as a cache to avoid multiple native objects having the same handle.
  * Objects contained in this tracker are stored inside {@link WeakReference}s, thus
  * letting them getting garbage collected.
+ * <p>
+ * Handles are kept in a primitive hash table, so looking up a handle does not allocate anything.
+ * Entries are removed once their object has been garbage collected, which is detected
+ * using a {@link ReferenceQueue}.
+ *
+ * <p>
+ * This class is not thread-safe, see {@link ConcurrentNativeObjectTracker} for a thread-safe variant.
  *
  * @param <T> the type of {@link NativeObject} this tracker contains
  */
 public final class NativeObjectTracker<T extends NativeObject> {
     private final ReferenceQueue<? super T> referenceQueue = new ReferenceQueue<>();
-    private final Map<@Pointer Long, HandleTrackingWeakReference<? extends T>> map = new WeakHashMap<>();
+    private final HandleReferenceTable<T> table = new HandleReferenceTable<>();
 
     private final NativeObjectFactory<? extends T> factory;
     private final Target target;
@@ -49,7 +56,7 @@ public final class NativeObjectTracker<T extends NativeObject> {
      * @return a native object of type {@code T} that owns the given handle
      */
     public T getOrCreate(@Pointer("T*") long handle) {
-        WeakReference<? extends T> reference = map.get(handle);
+        WeakReference<? extends T> reference = table.get(handle);
         T actualValue = reference == null ? null : reference.get();
 
         if (actualValue == null) {
@@ -79,7 +86,7 @@ public final class NativeObjectTracker<T extends NativeObject> {
 
         // We still have to check the reference's value as there might be a chance where
         // this reference might not have been deleted earlier.
-        HandleTrackingWeakReference<? extends T> existingValue = map.get(instance.getHandle());
+        HandleTrackingWeakReference<? extends T> existingValue = table.get(instance.getHandle());
         if (existingValue != null && existingValue.get() != null) {
             throw new IllegalArgumentException("Cannot register this instance as another instance is present " +
                                                "with the same handle.");
@@ -99,7 +106,7 @@ public final class NativeObjectTracker<T extends NativeObject> {
 
     private void putIntoMap(T instance) {
         long handle = instance.getHandle();
-        map.put(handle, new HandleTrackingWeakReference<>(instance, handle, referenceQueue));
+        table.put(new HandleTrackingWeakReference<>(instance, handle, referenceQueue));
         cleanGarbageCollectedObjects();
     }
 
@@ -107,8 +114,8 @@ public final class NativeObjectTracker<T extends NativeObject> {
         Reference<?> reference;
 
         while ((reference = referenceQueue.poll()) != null) {
-            HandleTrackingWeakReference<?> handleRef = (HandleTrackingWeakReference<?>) reference;
-            map.remove(handleRef.getHandle());
+            // This does nothing if the handle has been associated to a newer object since then.
+            table.remove((HandleTrackingWeakReference<?>) reference);
         }
     }
 
@@ -130,25 +137,12 @@ public final class NativeObjectTracker<T extends NativeObject> {
          */
         UNOWNED_OBJECTS(false, NativeObject.ResourceOwningState.UNOWNED);
 
-        private final boolean owned;
-        private final NativeObject.ResourceOwningState owningState;
+        final boolean owned;
+        final NativeObject.ResourceOwningState owningState;
 
         Target(boolean owned, NativeObject.ResourceOwningState owningState) {
             this.owned = owned;
             this.owningState = owningState;
         }
     }
-
-    private static final class HandleTrackingWeakReference<T> extends WeakReference<T> {
-        private final long handle;
-
-        public HandleTrackingWeakReference(T referent, long handle, ReferenceQueue<? super T> q) {
-            super(referent, q);
-            this.handle = handle;
-        }
-
-        public long getHandle() {
-            return handle;
-        }
-    }
 }
@@ -0,0 +1,192 @@
+// Copyright © Matt Jones and Contributors. Licensed under the MIT License (MIT). See LICENCE.md in the repository root for more information.
+
+package com.github.novelrt.fumocement;
+
+import com.github.novelrt.fumocement.memory.NativeMemory;
+import com.github.novelrt.fumocement.memory.NativeMemoryAccessor;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A bounded cache of decoded native strings, keyed by their address.
+ * <p>
+ * Native code often returns the same read-only strings again and again, such as asset names or enum names.
+ * Instead of decoding them each time, this cache returns the {@link String} decoded the first time a pointer was
+ * seen, without allocating anything. The cache keeps the UTF-8 bytes of every string, and before returning a cached
+ * string, compares them with the native string, up to and including its null terminator, so a pointer reused for
+ * another string, or a string changed in place, is decoded again. The comparison stops at the first difference,
+ * so it never reads past the end of a shorter string. It costs as much as copying the bytes, but the string doesn't
+ * have to be decoded nor allocated again.
+ * <p>
+ * The cache is set-associative: a pointer can only be stored in one of {@value #WAYS} slots, chosen using its
+ * address, and one of those slots is evicted when they are all used. It can be used from any thread.
+ * The cache returned by {@link #getDefault()} holds 1024 strings, which can be changed with the
+ * {@code novelrt.fumocement.strings.cacheSize} system property.
+ * <p>
+ * Only strings that are not deleted once decoded ({@link StringDeletionBehaviour#NO_DELETE}) are cached.
+ * <p>
+ * <b>Example:</b>
+ * <pre>{@code String assetName = NativeStringCache.getDefault().get(getAssetNameRaw(asset));
+ * }</pre>
+ */
+public final class NativeStringCache {
+    static final int WAYS = 4;
+
+    private final Entry[] entries;
+    // Which way of each set is evicted next. Races only make the eviction less fair.
+    private final byte[] nextVictims;
+    private final int setShift;
+
+    /**
+     * Creates a new cache holding at least {@code capacity} strings.
+     *
+     * @param capacity the number of strings to keep, which is rounded up to a power of two
+     * @throws IllegalArgumentException when the capacity is not positive or is too large
+     */
+    public NativeStringCache(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Invalid cache capacity: " + capacity);
+        }
+        int setCount = Math.max(1, Integer.highestOneBit((capacity + WAYS - 1) / WAYS - 1) << 1);
+        this.entries = new Entry[setCount * WAYS];
+        this.nextVictims = new byte[setCount];
+        this.setShift = Long.SIZE - Integer.numberOfTrailingZeros(setCount);
+    }
+
+    /**
+     * Gets the cache shared by the whole application.
+     *
+     * @return the default cache
+     */
+    public static NativeStringCache getDefault() {
+        return DefaultCache.INSTANCE;
+    }
+
+    public int getCapacity() {
+        return entries.length;
+    }
+
+    /**
+     * Gets the string at the given address, decoding it only if it isn't in the cache.
+     *
+     * @param address the address of the null-terminated UTF-8 string, which can be {@code 0}
+     * @return the string, or {@code null} if the address is {@code 0}
+     */
+    public @Nullable String get(@Pointer("const char*") long address) {
+        if (address == 0) {
+            return null;
+        }
+
+        int set = setOf(address);
+        int first = set * WAYS;
+        NativeMemoryAccessor accessor = NativeMemory.access();
+        for (int i = first; i < first + WAYS; i++) {
+            Entry entry = entries[i];
+            if (entry != null && entry.address == address && entry.matches(accessor)) {
+                return entry.string;
+            }
+        }
+
+        long length = NativeStrings.strlen(address);
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid string length: " + length);
+        }
+        byte[] bytes = new byte[(int) length];
+        accessor.getByteArray(address, bytes, 0, bytes.length);
+        String string = new String(bytes, StandardCharsets.UTF_8);
+        insert(set, new Entry(address, bytes, string));
+        return string;
+    }
+
+    /**
+     * Gets the string at the given address. Strings that must be deleted are decoded and deleted
+     * without going through the cache, as their address may be reused by another string afterwards.
+     *
+     * @param address           the address of the null-terminated UTF-8 string, which can be {@code 0}
+     * @param deletionBehaviour whether the string must be deleted once decoded
+     * @return the string, or {@code null} if the address is {@code 0}
+     */
+    public @Nullable String get(@Pointer("const char*") long address, StringDeletionBehaviour deletionBehaviour) {
+        if (deletionBehaviour.isDeletingString()) {
+            invalidate(address);
+            return NativeStrings.decode(address, deletionBehaviour);
+        }
+        return get(address);
+    }
+
+    /**
+     * Removes the string at the given address from the cache, for instance when it is about to be freed.
+     *
+     * @param address the address of the string
+     */
+    public void invalidate(@Pointer("const char*") long address) {
+        int first = setOf(address) * WAYS;
+        for (int i = first; i < first + WAYS; i++) {
+            Entry entry = entries[i];
+            if (entry != null && entry.address == address) {
+                entries[i] = null;
+            }
+        }
+    }
+
+    /**
+     * Removes every string from the cache.
+     */
+    public void clear() {
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = null;
+        }
+    }
+
+    private int setOf(long address) {
+        if (setShift == Long.SIZE) {
+            return 0;
+        }
+        return (int) ((address * 0x9E3779B97F4A7C15L) >>> setShift);
+    }
+
+    private void insert(int set, Entry entry) {
+        int first = set * WAYS;
+        for (int i = first; i < first + WAYS; i++) {
+            Entry existing = entries[i];
+            if (existing == null || existing.address == entry.address) {
+                entries[i] = entry;
+                return;
+            }
+        }
+        int victim = nextVictims[set];
+        nextVictims[set] = (byte) ((victim + 1) % WAYS);
+        entries[first + victim] = entry;
+    }
+
+    // Entries are immutable, so they can be read from any thread without synchronization.
+    private static final class Entry {
+        private final long address;
+        // The encoded string, without its null terminator.
+        private final byte[] bytes;
+        private final String string;
+
+        Entry(long address, byte[] bytes, String string) {
+            this.address = address;
+            this.bytes = bytes;
+            this.string = string;
+        }
+
+        boolean matches(NativeMemoryAccessor accessor) {
+            // The stored bytes are never 0, so this stops at the terminator of a shorter string,
+            // and never reads past it.
+            for (int i = 0; i < bytes.length; i++) {
+                if (accessor.getByte(address + i) != bytes[i]) {
+                    return false;
+                }
+            }
+            return accessor.getByte(address + bytes.length) == 0;
+        }
+    }
+
+    private static final class DefaultCache {
+        static final NativeStringCache INSTANCE =
+                new NativeStringCache(Integer.getInteger("novelrt.fumocement.strings.cacheSize", 1024));
+    }
+}
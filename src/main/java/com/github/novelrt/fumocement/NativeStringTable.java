@@ -0,0 +1,251 @@
+// Copyright © Matt Jones and Contributors. Licensed under the MIT License (MIT). See LICENCE.md in the repository root for more information.
+
+package com.github.novelrt.fumocement;
+
+import com.github.novelrt.fumocement.memory.NativeMemory;
+import com.github.novelrt.fumocement.memory.NativeMemoryAccessor;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A table of Java strings encoded once into long-lived native memory, so the same strings can be given
+ * to native code again and again without encoding them on each call.
+ * <p>
+ * {@link #intern(String)} returns the address of a null-terminated UTF-8 copy of the string, which is
+ * encoded the first time the string is interned, and reused afterwards.
+ * <p>
+ * A table can be bounded by the total size of its strings, in which case the least recently used strings
+ * are evicted when a new string doesn't fit. Strings that are already in the table are found without locking,
+ * so their recency is only approximate: it is tracked in steps of one new string. Strings can also be evicted explicitly with {@link #evict(String)}
+ * and {@link #clear()}. The memory of evicted strings isn't freed right away, as their address may still be
+ * used by another thread: it is freed when {@link #releaseEvicted()} is called, which must be done at a point
+ * where no evicted address is in use anymore, such as the end of a frame. Every string is freed
+ * once the table is closed.
+ * <p>
+ * <b>Example:</b>
+ * <pre>{@code NativeStringTable uniforms = new NativeStringTable();
+ * // ...
+ * setUniformFloat(shader, uniforms.intern("u_time"), time);
+ * }</pre>
+ * This class is thread-safe.
+ */
+public final class NativeStringTable implements AutoCloseable {
+    private final long maxSize;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    // Incremented when a string is added, and used to stamp the entries when they are used.
+    private volatile long clock;
+    private long size;
+    private long[] evictedAddresses = new long[16];
+    private int evictedCount;
+    private volatile boolean closed;
+
+    /**
+     * Creates a new table whose strings are only evicted explicitly.
+     */
+    public NativeStringTable() {
+        this(Long.MAX_VALUE);
+    }
+
+    /**
+     * Creates a new table holding at most {@code maxSize} bytes of encoded strings.
+     *
+     * @param maxSize the maximum total size of the encoded strings, including their null terminators
+     * @throws IllegalArgumentException when the maximum size is not positive
+     */
+    public NativeStringTable(long maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Invalid table size: " + maxSize);
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Gets the address of the encoded string, encoding it if it isn't in the table.
+     * The address stays valid until the string is evicted and {@link #releaseEvicted()} is called.
+     *
+     * @param string the string to intern, which can be {@code null}
+     * @return the address of the encoded string, or {@code 0} if the string is {@code null}
+     * @throws IllegalArgumentException when the string is larger than the maximum size of the table
+     * @throws IllegalStateException    when the table is closed
+     */
+    public @Pointer("const char*") long intern(@Nullable String string) {
+        if (string == null) {
+            return 0;
+        }
+        ensureOpen();
+
+        Entry entry = entries.get(string);
+        if (entry != null) {
+            entry.use(clock);
+            return entry.address;
+        }
+        return add(string);
+    }
+
+    private synchronized long add(String string) {
+        ensureOpen();
+        // Another thread may have added it while this one was waiting for the lock.
+        Entry entry = entries.get(string);
+        if (entry != null) {
+            return entry.address;
+        }
+
+        long stringSize = NativeStrings.encodedSize(string);
+        if (stringSize > maxSize) {
+            throw new IllegalArgumentException("Cannot intern a string of " + stringSize +
+                                               " bytes into a table of " + maxSize + " bytes.");
+        }
+        if (size + stringSize > maxSize) {
+            evictLeastRecentlyUsed(maxSize - stringSize);
+        }
+
+        long address = NativeMemory.access().allocateMemory(stringSize);
+        NativeStrings.encode(string, address, stringSize);
+        long now = clock + 1;
+        entries.put(string, new Entry(address, stringSize, now));
+        clock = now;
+        size += stringSize;
+        return address;
+    }
+
+    private void evictLeastRecentlyUsed(long targetSize) {
+        // The entries can still be used while sorting them, so the order uses a snapshot of their stamps.
+        List<Candidate> leastRecentlyUsed = new ArrayList<>(entries.size());
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            leastRecentlyUsed.add(new Candidate(entry.getKey(), entry.getValue(), entry.getValue().lastUsed));
+        }
+        leastRecentlyUsed.sort(Comparator.comparingLong(Candidate::lastUsed));
+        for (int i = 0; size > targetSize; i++) {
+            Candidate candidate = leastRecentlyUsed.get(i);
+            entries.remove(candidate.string());
+            retire(candidate.entry());
+        }
+    }
+
+    /**
+     * Checks whether the given string is in this table.
+     *
+     * @param string the string
+     * @return {@code true} if the string has been interned and not evicted
+     */
+    public boolean contains(String string) {
+        return entries.containsKey(string);
+    }
+
+    /**
+     * Evicts the given string from this table.
+     *
+     * @param string the string to evict
+     * @return {@code true} if the string was in this table
+     */
+    public synchronized boolean evict(String string) {
+        Entry entry = entries.remove(string);
+        if (entry == null) {
+            return false;
+        }
+        retire(entry);
+        return true;
+    }
+
+    /**
+     * Evicts every string from this table.
+     */
+    public synchronized void clear() {
+        for (Entry entry : entries.values()) {
+            retire(entry);
+        }
+        entries.clear();
+    }
+
+    /**
+     * Frees the memory of the evicted strings. Their addresses must not be used anymore.
+     *
+     * @return the number of strings freed
+     */
+    public synchronized int releaseEvicted() {
+        NativeMemoryAccessor accessor = NativeMemory.access();
+        int released = evictedCount;
+        for (int i = 0; i < evictedCount; i++) {
+            accessor.freeMemory(evictedAddresses[i]);
+        }
+        evictedCount = 0;
+        return released;
+    }
+
+    public int getStringCount() {
+        return entries.size();
+    }
+
+    public synchronized int getEvictedCount() {
+        return evictedCount;
+    }
+
+    /**
+     * Gets the total size of the strings in this table, excluding the evicted ones.
+     *
+     * @return the size of the strings, in bytes
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Frees every string of this table, including the evicted ones.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        clear();
+        releaseEvicted();
+        closed = true;
+    }
+
+    private void retire(Entry entry) {
+        if (evictedCount == evictedAddresses.length) {
+            evictedAddresses = Arrays.copyOf(evictedAddresses, evictedCount * 2);
+        }
+        evictedAddresses[evictedCount++] = entry.address;
+        size -= entry.size;
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Cannot use a string table after it has been closed.");
+        }
+    }
+
+    private static final class Entry {
+        private final long address;
+        private final long size;
+        // Written without synchronization: a racing update only makes the eviction order less accurate.
+        private long lastUsed;
+
+        Entry(long address, long size, long lastUsed) {
+            this.address = address;
+            this.size = size;
+            this.lastUsed = lastUsed;
+        }
+
+        void use(long now) {
+            // Avoids writing to memory shared between threads when nothing has been added since.
+            if (lastUsed != now) {
+                lastUsed = now;
+            }
+        }
+    }
+
+    private record Candidate(String string, Entry entry, long lastUsed) {
+    }
+}
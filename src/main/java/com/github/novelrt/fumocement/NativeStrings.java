@@ -0,0 +1,257 @@
+// Copyright © Matt Jones and Contributors. Licensed under the MIT License (MIT). See LICENCE.md in the repository root for more information.
+
+package com.github.novelrt.fumocement;
+
+import com.github.novelrt.fumocement.memory.FrameArena;
+import com.github.novelrt.fumocement.memory.NativeMemory;
+import com.github.novelrt.fumocement.memory.NativeMemoryAccessor;
+import com.github.novelrt.fumocement.memory.NativeStack;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Converts Java strings to null-terminated UTF-8 C strings ({@code char*}), and back.
+ * <p>
+ * Strings are encoded straight into native memory, usually allocated from a {@link NativeStack} or
+ * a {@link FrameArena}, so they can be given to native methods as pointers without any JNI array copy.
+ * Native strings are measured and read on the Java side through the {@link NativeMemoryAccessor}.
+ * <p>
+ * <b>Example:</b>
+ * <pre>{@code try (NativeStack.Scope scope = NativeStack.current().scope()) {
+ *   setWindowTitle(window, NativeStrings.encode(scope, title));
+ * }
+ * String name = NativeStrings.decode(getPlayerName(player), StringDeletionBehaviour.DELETE);
+ * }</pre>
+ */
+public final class NativeStrings {
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final boolean LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
+    private NativeStrings() {
+    }
+
+    /**
+     * Encodes a string into memory allocated in the given scope.
+     *
+     * @param scope  the scope to allocate the string in
+     * @param string the string to encode, which can be {@code null}
+     * @return the address of the encoded string, or {@code 0} if the string is {@code null}
+     */
+    public static @Pointer("char*") long encode(NativeStack.Scope scope, @Nullable String string) {
+        if (string == null) {
+            return 0;
+        }
+        long size = encodedSize(string);
+        return encodeUnchecked(string, scope.allocate(size), size);
+    }
+
+    /**
+     * Encodes a string into memory allocated on the given stack, which is freed by restoring a
+     * {@linkplain NativeStack#mark() mark} of the stack.
+     *
+     * @param stack  the stack to allocate the string in
+     * @param string the string to encode, which can be {@code null}
+     * @return the address of the encoded string, or {@code 0} if the string is {@code null}
+     */
+    public static @Pointer("char*") long encode(NativeStack stack, @Nullable String string) {
+        if (string == null) {
+            return 0;
+        }
+        long size = encodedSize(string);
+        return encodeUnchecked(string, stack.allocateManual(size), size);
+    }
+
+    /**
+     * Encodes a string into memory allocated in the current frame of the given arena.
+     *
+     * @param arena  the arena to allocate the string in
+     * @param string the string to encode, which can be {@code null}
+     * @return the address of the encoded string, or {@code 0} if the string is {@code null}
+     */
+    public static @Pointer("char*") long encode(FrameArena arena, @Nullable String string) {
+        if (string == null) {
+            return 0;
+        }
+        long size = encodedSize(string);
+        return encodeUnchecked(string, arena.allocate(size, 1), size);
+    }
+
+    /**
+     * Encodes a string at the given address, which must have room for {@link #encodedSize(String)} bytes.
+     *
+     * @param string   the string to encode
+     * @param address  the address to write the string to
+     * @param capacity the number of bytes available at the address
+     * @return the given address
+     * @throws IllegalArgumentException when the string doesn't fit
+     */
+    public static @Pointer("char*") long encode(String string, @Pointer("char*") long address, long capacity) {
+        long size = encodedSize(string);
+        if (size > capacity) {
+            throw new IllegalArgumentException("Cannot encode a string of " + size + " bytes into " +
+                                               capacity + " bytes.");
+        }
+        return encodeUnchecked(string, address, size);
+    }
+
+    /**
+     * Gets the size of the given string once encoded in UTF-8, including the null terminator.
+     *
+     * @param string the string
+     * @return the number of bytes needed to encode the string
+     */
+    public static long encodedSize(String string) {
+        int length = string.length();
+        long size = length + 1;
+        for (int i = 0; i < length; i++) {
+            char c = string.charAt(i);
+            if (c >= 0x80) {
+                if (c < 0x800) {
+                    size += 1;
+                } else if (Character.isHighSurrogate(c) && i + 1 < length &&
+                           Character.isLowSurrogate(string.charAt(i + 1))) {
+                    // 4 bytes for 2 chars.
+                    size += 2;
+                    i++;
+                } else if (Character.isSurrogate(c)) {
+                    // Unpaired surrogates are replaced by '?', like String.getBytes does.
+                } else {
+                    size += 2;
+                }
+            }
+        }
+        return size;
+    }
+
+    private static long encodeUnchecked(String string, long address, long size) {
+        NativeMemoryAccessor accessor = NativeMemory.access();
+        int length = string.length();
+        if (size == length + 1) {
+            // One byte per character, which is the most common case. The only characters that can
+            // be encoded in one byte, other than ASCII ones, are the unpaired surrogates replaced by '?'.
+            for (int i = 0; i < length; i++) {
+                char c = string.charAt(i);
+                accessor.putByte(address + i, c < 0x80 ? (byte) c : (byte) '?');
+            }
+            accessor.putByte(address + length, (byte) 0);
+            return address;
+        }
+
+        long position = address;
+        for (int i = 0; i < length; i++) {
+            char c = string.charAt(i);
+            if (c < 0x80) {
+                accessor.putByte(position++, (byte) c);
+            } else if (c < 0x800) {
+                accessor.putByte(position++, (byte) (0xC0 | (c >> 6)));
+                accessor.putByte(position++, (byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length &&
+                       Character.isLowSurrogate(string.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, string.charAt(++i));
+                accessor.putByte(position++, (byte) (0xF0 | (codePoint >> 18)));
+                accessor.putByte(position++, (byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                accessor.putByte(position++, (byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                accessor.putByte(position++, (byte) (0x80 | (codePoint & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                accessor.putByte(position++, (byte) '?');
+            } else {
+                accessor.putByte(position++, (byte) (0xE0 | (c >> 12)));
+                accessor.putByte(position++, (byte) (0x80 | ((c >> 6) & 0x3F)));
+                accessor.putByte(position++, (byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        accessor.putByte(position, (byte) 0);
+        return address;
+    }
+
+    /**
+     * Gets the length of a null-terminated string, in bytes, excluding the null terminator.
+     * <p>
+     * The string is read 8 bytes at a time, using aligned reads so the end of the string
+     * is never read past the page it is in.
+     *
+     * @param address the address of the string
+     * @return the length of the string
+     */
+    public static long strlen(@Pointer("char*") long address) {
+        NativeMemoryAccessor accessor = NativeMemory.access();
+        long position = address;
+        // Read byte by byte until we are aligned.
+        for (; (position & 7) != 0; position++) {
+            if (accessor.getByte(position) == 0) {
+                return position - address;
+            }
+        }
+        while (true) {
+            long word = accessor.getLong(position);
+            if (LITTLE_ENDIAN) {
+                // Sets the high bit of every zero byte, and possibly of some bytes after the first zero byte,
+                // which come after it in memory and so don't change the lowest bit set.
+                long zeroBytes = (word - ONES) & ~word & HIGH_BITS;
+                if (zeroBytes != 0) {
+                    return position + (Long.numberOfTrailingZeros(zeroBytes) >>> 3) - address;
+                }
+            } else {
+                // The borrows of the subtraction above can set the high bit of a byte before the first zero
+                // byte in memory, such as 01 followed by 00, so this uses a mask without carries between bytes.
+                long zeroBytes = ~(((word & LOW_BITS) + LOW_BITS) | word | LOW_BITS);
+                if (zeroBytes != 0) {
+                    return position + (Long.numberOfLeadingZeros(zeroBytes) >>> 3) - address;
+                }
+            }
+            position += 8;
+        }
+    }
+
+    /**
+     * Decodes a null-terminated UTF-8 string, without deleting it.
+     *
+     * @param address the address of the string, which can be {@code 0}
+     * @return the decoded string, or {@code null} if the address is {@code 0}
+     */
+    public static @Nullable String decode(@Pointer("char*") long address) {
+        return decode(address, StringDeletionBehaviour.NO_DELETE);
+    }
+
+    /**
+     * Decodes a null-terminated UTF-8 string, and deletes it with {@code delete[]} if the
+     * deletion behaviour says so.
+     *
+     * @param address           the address of the string, which can be {@code 0}
+     * @param deletionBehaviour whether the string must be deleted once decoded
+     * @return the decoded string, or {@code null} if the address is {@code 0}
+     */
+    public static @Nullable String decode(@Pointer("char*") long address, StringDeletionBehaviour deletionBehaviour) {
+        if (address == 0) {
+            return null;
+        }
+        String string = decode(address, strlen(address));
+        if (deletionBehaviour.isDeletingString()) {
+            deleteStringRaw(address);
+        }
+        return string;
+    }
+
+    /**
+     * Decodes a UTF-8 string of the given length, which doesn't need to be null-terminated.
+     *
+     * @param address the address of the string
+     * @param length  the length of the string, in bytes
+     * @return the decoded string
+     * @throws IllegalArgumentException when the length is negative or larger than 2 GB
+     */
+    public static String decode(@Pointer("char*") long address, long length) {
+        if (length < 0 || length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid string length: " + length);
+        }
+        byte[] bytes = new byte[(int) length];
+        NativeMemory.access().getByteArray(address, bytes, 0, bytes.length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static native void deleteStringRaw(@Pointer("char*") long address);
+}
@@ -3,8 +3,11 @@
 package com.github.novelrt.fumocement;
 
 import com.github.novelrt.fumocement.layout.NativeLayouts;
+import com.github.novelrt.fumocement.memory.NativeMemory;
+import com.github.novelrt.fumocement.memory.NativeMemoryAccessor;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 /**
  * Contains tools to manipulate pointers, mainly used for going through an array.
@@ -102,6 +105,7 @@ public final class Pointers {
         return pointer + UINTPTR_T_SIZE;
     }
 
+    // This is only used when the NativeMemoryAccessor can't access direct buffers.
     private static native @Pointer long getByteBufferLocationRaw(ByteBuffer byteBuffer);
 
     /**
@@ -117,6 +121,31 @@ public final class Pointers {
                     "The given byte buffer does not have any native pointer as is not direct.");
         }
 
+        NativeMemoryAccessor accessor = NativeMemory.access();
+        if (accessor.canAccessDirectBuffers()) {
+            return accessor.getDirectBufferAddress(byteBuffer);
+        }
         return getByteBufferLocationRaw(byteBuffer);
     }
+
+    private static native ByteBuffer newDirectByteBufferRaw(@Pointer long address, long capacity);
+
+    /**
+     * Creates a direct {@code ByteBuffer} using the native memory at the given address, without copying it.
+     * The buffer uses the native byte order.
+     * <p>
+     * The buffer does not own the memory: it must not be used once the memory has been freed.
+     *
+     * @param address  the address of the memory
+     * @param capacity the size of the memory, in bytes
+     * @return a direct {@code ByteBuffer} using the given memory
+     * @throws IllegalArgumentException when the capacity is negative
+     */
+    public static ByteBuffer asByteBuffer(@Pointer long address, int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Invalid byte buffer capacity: " + capacity);
+        }
+
+        return newDirectByteBufferRaw(address, capacity).order(ByteOrder.nativeOrder());
+    }
 }
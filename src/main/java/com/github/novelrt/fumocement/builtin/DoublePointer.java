@@ -4,6 +4,7 @@
 package com.github.novelrt.fumocement.builtin;
 
 import com.github.novelrt.fumocement.memory.NativeMemory;
+import com.github.novelrt.fumocement.memory.NativeMemoryPool;
 import com.github.novelrt.fumocement.memory.NativeStack;
 
 /**
@@ -26,6 +27,14 @@ public sealed class DoublePointer {
         return new DoublePointer(scope.allocate(SIZE));
     }
 
+    public static long allocateManual(NativeStack stack) {
+        return stack.allocateManual(SIZE);
+    }
+
+    public static Pooled allocate(NativeMemoryPool pool) {
+        return new Pooled(pool.allocate(SIZE), pool);
+    }
+
     public double getValue() {
         return NativeMemory.access().getDouble(address);
     }
@@ -34,6 +43,14 @@ public sealed class DoublePointer {
         NativeMemory.access().putDouble(address, value);
     }
 
+    public static double read(long address) {
+        return NativeMemory.access().getDouble(address);
+    }
+
+    public static void write(long address, double value) {
+        NativeMemory.access().putDouble(address, value);
+    }
+
     public long getAddress() {
         return address;
     }
@@ -51,4 +68,22 @@ public sealed class DoublePointer {
             stack.freeManual(SIZE);
         }
     }
+
+    public static final class Pooled extends DoublePointer implements AutoCloseable {
+        private final NativeMemoryPool pool;
+        private boolean closed;
+
+        private Pooled(long address, NativeMemoryPool pool) {
+            super(address);
+            this.pool = pool;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                pool.free(getAddress(), SIZE);
+            }
+        }
+    }
 }
@@ -4,6 +4,7 @@
 package com.github.novelrt.fumocement.builtin;
 
 import com.github.novelrt.fumocement.memory.NativeMemory;
+import com.github.novelrt.fumocement.memory.NativeMemoryPool;
 import com.github.novelrt.fumocement.memory.NativeStack;
 
 /**
@@ -26,6 +27,14 @@ public sealed class Int16Pointer {
         return new Int16Pointer(scope.allocate(SIZE));
     }
 
+    public static long allocateManual(NativeStack stack) {
+        return stack.allocateManual(SIZE);
+    }
+
+    public static Pooled allocate(NativeMemoryPool pool) {
+        return new Pooled(pool.allocate(SIZE), pool);
+    }
+
     public short getValue() {
         return NativeMemory.access().getShort(address);
     }
@@ -34,6 +43,14 @@ public sealed class Int16Pointer {
         NativeMemory.access().putShort(address, value);
     }
 
+    public static short read(long address) {
+        return NativeMemory.access().getShort(address);
+    }
+
+    public static void write(long address, short value) {
+        NativeMemory.access().putShort(address, value);
+    }
+
     public long getAddress() {
         return address;
     }
@@ -51,4 +68,22 @@ public sealed class Int16Pointer {
             stack.freeManual(SIZE);
         }
     }
+
+    public static final class Pooled extends Int16Pointer implements AutoCloseable {
+        private final NativeMemoryPool pool;
+        private boolean closed;
+
+        private Pooled(long address, NativeMemoryPool pool) {
+            super(address);
+            this.pool = pool;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                pool.free(getAddress(), SIZE);
+            }
+        }
+    }
 }
@@ -0,0 +1,137 @@
+// Copyright © Matt Jones and Contributors. Licensed under the MIT License (MIT). See LICENCE.md in the repository root for more information.
+
+package com.github.novelrt.fumocement.builtin;
+
+import com.github.novelrt.fumocement.DisposalMethod;
+import com.github.novelrt.fumocement.NativeObject;
+import com.github.novelrt.fumocement.Pointer;
+import com.github.novelrt.fumocement.Pointers;
+import com.github.novelrt.fumocement.memory.NativeMemory;
+import com.github.novelrt.fumocement.memory.NativeStack;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Objects;
+
+/**
+ * Represents an {@code int32_t[]} stored natively, along with its length.
+ * <p>
+ * The array is either a view over existing memory, allocated in a {@link NativeStack.Scope},
+ * or owns its memory, which is then freed according to its {@link DisposalMethod}.
+ */
+public final class Int32Array extends NativeObject {
+    public static final long ELEMENT_SIZE = Int32Pointer.SIZE;
+
+    private final long length;
+
+    public Int32Array(@Pointer("int32_t*") long address, long length) {
+        this(address, length, false, DisposalMethod.MANUAL);
+    }
+
+    private Int32Array(long address, long length, boolean owned, DisposalMethod disposalMethod) {
+        super(address, owned, disposalMethod, owned ? NativeMemory.freeMemoryDeleter() : null);
+        this.length = length;
+    }
+
+    public static Int32Array allocate(NativeStack.Scope scope, long length) {
+        return new Int32Array(scope.allocate(byteSizeOf(length)), length);
+    }
+
+    public static Int32Array allocate(long length) {
+        return allocate(length, DisposalMethod.GARBAGE_COLLECTED);
+    }
+
+    public static Int32Array allocate(long length, DisposalMethod disposalMethod) {
+        return new Int32Array(NativeMemory.access().allocateMemory(byteSizeOf(length)), length, true, disposalMethod);
+    }
+
+    private static long byteSizeOf(long length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("Invalid array length: " + length);
+        }
+        return Math.multiplyExact(length, ELEMENT_SIZE);
+    }
+
+    public long length() {
+        return length;
+    }
+
+    public @Pointer("int32_t*") long getAddress() {
+        return getHandle();
+    }
+
+    public @Pointer("int32_t*") long getElementAddress(long index) {
+        return getHandle() + index * ELEMENT_SIZE;
+    }
+
+    public int get(long index) {
+        Objects.checkIndex(index, length);
+        return NativeMemory.access().getInt(getElementAddress(index));
+    }
+
+    public void set(long index, int value) {
+        Objects.checkIndex(index, length);
+        NativeMemory.access().putInt(getElementAddress(index), value);
+    }
+
+    /**
+     * Copies {@code count} elements of this array, starting at {@code index}, into a Java array.
+     *
+     * @param index  the index of the first element to copy
+     * @param array  the destination array
+     * @param offset the index of the first element to write in the destination array
+     * @param count  the number of elements to copy
+     * @throws IndexOutOfBoundsException when a range is out of the bounds of one of the arrays
+     */
+    public void copyTo(long index, int[] array, int offset, int count) {
+        Objects.checkFromIndexSize(index, count, length);
+        NativeMemory.access().getIntArray(getElementAddress(index), array, offset, count);
+    }
+
+    /**
+     * Copies {@code count} elements of a Java array into this array, starting at {@code index}.
+     *
+     * @param index  the index of the first element to write
+     * @param array  the source array
+     * @param offset the index of the first element to read in the source array
+     * @param count  the number of elements to copy
+     * @throws IndexOutOfBoundsException when a range is out of the bounds of one of the arrays
+     */
+    public void copyFrom(long index, int[] array, int offset, int count) {
+        Objects.checkFromIndexSize(index, count, length);
+        NativeMemory.access().putIntArray(getElementAddress(index), array, offset, count);
+    }
+
+    public int[] toArray() {
+        if (length > Integer.MAX_VALUE) {
+            throw new UnsupportedOperationException("Cannot copy " + length + " elements to a Java array.");
+        }
+        int[] array = new int[(int) length];
+        copyTo(0, array, 0, array.length);
+        return array;
+    }
+
+    /**
+     * Gets a view of this array as a {@link ByteBuffer}, using the native byte order.
+     *
+     * @return a view of the bytes of this array
+     * @throws UnsupportedOperationException when the array is larger than 2 GB
+     */
+    public ByteBuffer asByteBuffer() {
+        long byteSize = length * ELEMENT_SIZE;
+        if (byteSize > Integer.MAX_VALUE) {
+            throw new UnsupportedOperationException("Cannot create a buffer of " + byteSize + " bytes.");
+        }
+        return Pointers.asByteBuffer(getHandle(), (int) byteSize);
+    }
+
+    /**
+     * Gets a view of this array as an {@link IntBuffer}.
+     *
+     * @return a view of this array
+     * @throws UnsupportedOperationException when the array is larger than 2 GB
+     */
+    public IntBuffer asBuffer() {
+        return asByteBuffer().asIntBuffer();
+    }
+}
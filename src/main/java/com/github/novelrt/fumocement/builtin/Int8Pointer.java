@@ -4,6 +4,7 @@
 package com.github.novelrt.fumocement.builtin;
 
 import com.github.novelrt.fumocement.memory.NativeMemory;
+import com.github.novelrt.fumocement.memory.NativeMemoryPool;
 import com.github.novelrt.fumocement.memory.NativeStack;
 
 /**
@@ -26,6 +27,14 @@ public sealed class Int8Pointer {
         return new Int8Pointer(scope.allocate(SIZE));
     }
 
+    public static long allocateManual(NativeStack stack) {
+        return stack.allocateManual(SIZE);
+    }
+
+    public static Pooled allocate(NativeMemoryPool pool) {
+        return new Pooled(pool.allocate(SIZE), pool);
+    }
+
     public byte getValue() {
         return NativeMemory.access().getByte(address);
     }
@@ -34,6 +43,14 @@ public sealed class Int8Pointer {
         NativeMemory.access().putByte(address, value);
     }
 
+    public static byte read(long address) {
+        return NativeMemory.access().getByte(address);
+    }
+
+    public static void write(long address, byte value) {
+        NativeMemory.access().putByte(address, value);
+    }
+
     public long getAddress() {
         return address;
     }
@@ -51,4 +68,22 @@ public sealed class Int8Pointer {
             stack.freeManual(SIZE);
         }
     }
+
+    public static final class Pooled extends Int8Pointer implements AutoCloseable {
+        private final NativeMemoryPool pool;
+        private boolean closed;
+
+        private Pooled(long address, NativeMemoryPool pool) {
+            super(address);
+            this.pool = pool;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                pool.free(getAddress(), SIZE);
+            }
+        }
+    }
 }
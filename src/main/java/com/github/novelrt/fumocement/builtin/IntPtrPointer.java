@@ -5,6 +5,7 @@ package com.github.novelrt.fumocement.builtin;
 
 import com.github.novelrt.fumocement.layout.NativeLayouts;
 import com.github.novelrt.fumocement.memory.NativeMemory;
+import com.github.novelrt.fumocement.memory.NativeMemoryPool;
 import com.github.novelrt.fumocement.memory.NativeStack;
 
 /**
@@ -27,6 +28,14 @@ public sealed class IntPtrPointer {
         return new IntPtrPointer(scope.allocate(SIZE));
     }
 
+    public static long allocateManual(NativeStack stack) {
+        return stack.allocateManual(SIZE);
+    }
+
+    public static Pooled allocate(NativeMemoryPool pool) {
+        return new Pooled(pool.allocate(SIZE), pool);
+    }
+
     public long getValue() {
         return NativeMemory.access().getAddress(address);
     }
@@ -35,6 +44,14 @@ public sealed class IntPtrPointer {
         NativeMemory.access().putAddress(address, value);
     }
 
+    public static long read(long address) {
+        return NativeMemory.access().getAddress(address);
+    }
+
+    public static void write(long address, long value) {
+        NativeMemory.access().putAddress(address, value);
+    }
+
     public long getAddress() {
         return address;
     }
@@ -52,4 +69,22 @@ public sealed class IntPtrPointer {
             stack.freeManual(SIZE);
         }
     }
+
+    public static final class Pooled extends IntPtrPointer implements AutoCloseable {
+        private final NativeMemoryPool pool;
+        private boolean closed;
+
+        private Pooled(long address, NativeMemoryPool pool) {
+            super(address);
+            this.pool = pool;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                pool.free(getAddress(), SIZE);
+            }
+        }
+    }
 }
@@ -0,0 +1,65 @@
+// Copyright © Matt Jones and Contributors. Licensed under the MIT License (MIT). See LICENCE.md in the repository root for more information.
+
+package com.github.novelrt.fumocement.layout;
+
+/**
+ * The C types that can be used in a {@link NativeStruct}, with the Java type used to represent them.
+ */
+public enum CType {
+    /**
+     * {@code bool}, represented by a {@code boolean}.
+     */
+    BOOL,
+    /**
+     * {@code char}, represented by a {@code byte}.
+     */
+    CHAR,
+    /**
+     * {@code short}, represented by a {@code short}.
+     */
+    SHORT,
+    /**
+     * {@code int}, represented by an {@code int}.
+     */
+    INT,
+    /**
+     * {@code long}, represented by a {@code long}, even on platforms where it is 32-bit.
+     */
+    LONG,
+    /**
+     * {@code long long}, represented by a {@code long}.
+     */
+    LONG_LONG,
+    /**
+     * {@code float}, represented by a {@code float}.
+     */
+    FLOAT,
+    /**
+     * {@code double}, represented by a {@code double}.
+     */
+    DOUBLE,
+    /**
+     * Any pointer type, represented by a {@code long}.
+     */
+    POINTER;
+
+    /**
+     * Gets the layout of this type on a 64-bit platform, where every type is naturally aligned.
+     * Only the size of {@code long} depends on the data model: it is 8 bytes with LP64, and 4 bytes with LLP64.
+     * <p>
+     * Unlike {@link NativeLayouts}, this doesn't depend on the current platform, so it can be used to compute the
+     * layouts of other platforms, for instance at compile time.
+     *
+     * @param lp64 {@code true} for the LP64 data model, {@code false} for the LLP64 one
+     * @return the layout of this type
+     */
+    public TypeLayout get64BitLayout(boolean lp64) {
+        return TypeLayout.naturallyAligned(switch (this) {
+            case BOOL, CHAR -> 1;
+            case SHORT -> 2;
+            case INT, FLOAT -> 4;
+            case LONG -> lp64 ? 8 : 4;
+            case LONG_LONG, DOUBLE, POINTER -> 8;
+        });
+    }
+}
@@ -17,26 +17,26 @@ public final class LP64Layouts implements NativeLayouts {
 
     @Override
     public TypeLayout getShort() {
-        return TypeLayout.naturallyAligned(2);
+        return CType.SHORT.get64BitLayout(true);
     }
 
     @Override
     public TypeLayout getInt() {
-        return TypeLayout.naturallyAligned(4);
+        return CType.INT.get64BitLayout(true);
     }
 
     @Override
     public TypeLayout getLong() {
-        return TypeLayout.naturallyAligned(8);
+        return CType.LONG.get64BitLayout(true);
     }
 
     @Override
     public TypeLayout getLongLong() {
-        return TypeLayout.naturallyAligned(8);
+        return CType.LONG_LONG.get64BitLayout(true);
     }
 
     @Override
     public TypeLayout getPointer() {
-        return TypeLayout.naturallyAligned(8);
+        return CType.POINTER.get64BitLayout(true);
     }
 }
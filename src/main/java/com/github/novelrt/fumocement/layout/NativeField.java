@@ -0,0 +1,28 @@
+// Copyright © Matt Jones and Contributors. Licensed under the MIT License (MIT). See LICENCE.md in the repository root for more information.
+
+package com.github.novelrt.fumocement.layout;
+
+import java.lang.annotation.*;
+
+/**
+ * Declares a field of a {@link NativeStruct}. The Java type of the annotated field must be the one
+ * representing its {@link CType}.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.FIELD)
+@Documented
+public @interface NativeField {
+    /**
+     * Returns the C type of the field.
+     *
+     * @return the C type of the field
+     */
+    CType value();
+
+    /**
+     * Returns the number of elements of the field, which is an array when this is greater than one.
+     *
+     * @return the number of elements of the field
+     */
+    int count() default 1;
+}
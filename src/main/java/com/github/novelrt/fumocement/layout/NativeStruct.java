@@ -0,0 +1,42 @@
+// Copyright © Matt Jones and Contributors. Licensed under the MIT License (MIT). See LICENCE.md in the repository root for more information.
+
+package com.github.novelrt.fumocement.layout;
+
+import java.lang.annotation.*;
+
+/**
+ * Declares a native struct, whose fields are the fields of the annotated class marked with {@link NativeField},
+ * in declaration order.
+ * <p>
+ * The FumoCement annotation processor generates an accessor class for each declaration, next to it.
+ * The accessor class contains the size, alignment and field offsets of the struct as constants,
+ * computed at compile time for both the LP64 and LLP64 data models, along with static getters and setters
+ * reading and writing the fields of a struct at a given address using the {@code NativeMemoryAccessor}.
+ * <p>
+ * <b>Example:</b>
+ * <pre>{@code @NativeStruct("Vertex")
+ * abstract class VertexDeclaration {
+ *   @NativeField(CType.FLOAT) float x;
+ *   @NativeField(CType.FLOAT) float y;
+ *   @NativeField(value = CType.CHAR, count = 4) byte color;
+ * }
+ *
+ * long vertex = scope.allocate(Vertex.SIZE);
+ * Vertex.setX(vertex, 1.0f);
+ * Vertex.setColor(vertex, 3, (byte) 255);
+ * }</pre>
+ *
+ * @see StructLayoutArranger
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+@Documented
+public @interface NativeStruct {
+    /**
+     * Returns the simple name of the generated accessor class. When empty, the name of the annotated class
+     * followed by {@code Accessor} is used.
+     *
+     * @return the simple name of the generated class
+     */
+    String value() default "";
+}
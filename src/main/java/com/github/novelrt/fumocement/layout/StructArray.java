@@ -0,0 +1,372 @@
+// Copyright © Matt Jones and Contributors. Licensed under the MIT License (MIT). See LICENCE.md in the repository root for more information.
+
+package com.github.novelrt.fumocement.layout;
+
+import com.github.novelrt.fumocement.Pointer;
+import com.github.novelrt.fumocement.Pointers;
+import com.github.novelrt.fumocement.memory.NativeMemory;
+import com.github.novelrt.fumocement.memory.NativeMemoryAccessor;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A view over a native array of structs, such as a {@code T*} given along with a count by native code.
+ * <p>
+ * Instead of creating an object per element, the elements are visited using a {@link Cursor}, a flyweight
+ * that moves from one element to the next by adding the stride of the array to its address.
+ * Iterating over the array, with a {@code for} loop, {@link #forEach(Consumer)} or a {@link Stream}, only creates
+ * one cursor, so the cursors given to the loop body must not be kept after it.
+ * <p>
+ * <b>Example:</b>
+ * <pre>{@code StructArray entities = new StructArray(entitiesPointer, entityCount, ENTITY_LAYOUT);
+ * for (StructArray.Cursor entity : entities) {
+ *   entity.putFloat(POSITION_X_OFFSET, entity.getFloat(POSITION_X_OFFSET) + 1.0f);
+ * }
+ * }</pre>
+ */
+public final class StructArray implements Iterable<StructArray.Cursor> {
+    private final long address;
+    private final long length;
+    private final long stride;
+
+    /**
+     * Creates a view over an array of structs with the given layout, usually obtained with
+     * {@link StructLayoutArranger#completeStruct()}.
+     *
+     * @param address the address of the first element
+     * @param length  the number of elements
+     * @param layout  the layout of an element, whose size is the stride of the array
+     */
+    public StructArray(@Pointer("T*") long address, long length, TypeLayout layout) {
+        this(address, length, layout.size());
+    }
+
+    /**
+     * Creates a view over an array of elements separated by {@code stride} bytes.
+     *
+     * @param address the address of the first element
+     * @param length  the number of elements
+     * @param stride  the number of bytes between the start of two elements
+     * @throws IllegalArgumentException when the length or the stride is negative
+     */
+    public StructArray(@Pointer("T*") long address, long length, long stride) {
+        if (length < 0) {
+            throw new IllegalArgumentException("Invalid array length: " + length);
+        }
+        if (stride < 0) {
+            throw new IllegalArgumentException("Invalid array stride: " + stride);
+        }
+        this.address = address;
+        this.length = length;
+        this.stride = stride;
+    }
+
+    public @Pointer("T*") long getAddress() {
+        return address;
+    }
+
+    public long length() {
+        return length;
+    }
+
+    public long getStride() {
+        return stride;
+    }
+
+    public @Pointer("T*") long getElementAddress(long index) {
+        Objects.checkIndex(index, length);
+        return address + index * stride;
+    }
+
+    /**
+     * Gets a view of the bytes of this array as a {@link ByteBuffer}, using the native byte order.
+     *
+     * @return a view of the memory of this array
+     * @throws UnsupportedOperationException when the array is larger than 2 GB
+     */
+    public ByteBuffer asByteBuffer() {
+        long byteSize = length * stride;
+        if (byteSize > Integer.MAX_VALUE) {
+            throw new UnsupportedOperationException("Cannot create a buffer of " + byteSize + " bytes.");
+        }
+        return Pointers.asByteBuffer(address, (int) byteSize);
+    }
+
+    /**
+     * Creates a new cursor placed on the first element of this array.
+     *
+     * @return a new cursor
+     */
+    public Cursor cursor() {
+        return new Cursor(this);
+    }
+
+    /**
+     * Calls the given action for each element of this array, in order, using the same cursor.
+     *
+     * @param action the action to call for each element
+     */
+    @Override
+    public void forEach(Consumer<? super Cursor> action) {
+        Cursor cursor = new Cursor(this);
+        for (long i = 0; i < length; i++) {
+            cursor.setPosition(i);
+            action.accept(cursor);
+        }
+    }
+
+    /**
+     * Calls the given action with the address of each element of this array, in order.
+     * This does not create any object.
+     *
+     * @param action the action to call with the address of each element
+     */
+    public void forEachAddress(LongConsumer action) {
+        for (long i = 0; i < length; i++) {
+            action.accept(address + i * stride);
+        }
+    }
+
+    /**
+     * Returns an iterator over the elements of this array, which always returns the same cursor.
+     *
+     * @return an iterator over the elements of this array
+     */
+    @Override
+    public Iterator<Cursor> iterator() {
+        return new Iterator<>() {
+            private final Cursor cursor = new Cursor(StructArray.this);
+            private long next;
+
+            @Override
+            public boolean hasNext() {
+                return next < length;
+            }
+
+            @Override
+            public Cursor next() {
+                if (next >= length) {
+                    throw new NoSuchElementException();
+                }
+                cursor.setPosition(next++);
+                return cursor;
+            }
+        };
+    }
+
+    /**
+     * Returns a spliterator over the elements of this array. Each spliterator, including the ones obtained by
+     * splitting it, always gives the same cursor to its actions.
+     *
+     * @return a spliterator over the elements of this array
+     */
+    @Override
+    public Spliterator<Cursor> spliterator() {
+        return new CursorSpliterator(this, 0, length);
+    }
+
+    /**
+     * Returns a sequential stream over the elements of this array.
+     *
+     * @return a stream over the elements of this array
+     * @see #spliterator()
+     */
+    public Stream<Cursor> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Returns a parallel stream over the elements of this array. Each thread uses its own cursor.
+     *
+     * @return a parallel stream over the elements of this array
+     * @see #spliterator()
+     */
+    public Stream<Cursor> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * A movable view of an element of a {@link StructArray}, with methods to access its fields using their offset.
+     * <p>
+     * The address of the current element can also be given to the accessor classes generated for
+     * {@link NativeStruct}s.
+     */
+    public static final class Cursor {
+        private static final NativeMemoryAccessor ACCESSOR = NativeMemory.access();
+
+        private final StructArray array;
+        private long index;
+        private long address;
+
+        private Cursor(StructArray array) {
+            this.array = array;
+            this.address = array.address;
+        }
+
+        public StructArray getArray() {
+            return array;
+        }
+
+        public long getIndex() {
+            return index;
+        }
+
+        public @Pointer("T*") long getAddress() {
+            return address;
+        }
+
+        /**
+         * Moves this cursor to the element at the given index.
+         *
+         * @param index the index of the element
+         * @return this cursor
+         * @throws IndexOutOfBoundsException when the index is out of the bounds of the array
+         */
+        public Cursor moveTo(long index) {
+            Objects.checkIndex(index, array.length);
+            setPosition(index);
+            return this;
+        }
+
+        /**
+         * Moves this cursor to the next element, if there is one.
+         *
+         * @return {@code true} if the cursor has moved, {@code false} if it was on the last element
+         */
+        public boolean next() {
+            if (index + 1 >= array.length) {
+                return false;
+            }
+            index++;
+            address += array.stride;
+            return true;
+        }
+
+        public byte getByte(long offset) {
+            return ACCESSOR.getByte(address + offset);
+        }
+
+        public void putByte(long offset, byte value) {
+            ACCESSOR.putByte(address + offset, value);
+        }
+
+        public short getShort(long offset) {
+            return ACCESSOR.getShort(address + offset);
+        }
+
+        public void putShort(long offset, short value) {
+            ACCESSOR.putShort(address + offset, value);
+        }
+
+        public int getInt(long offset) {
+            return ACCESSOR.getInt(address + offset);
+        }
+
+        public void putInt(long offset, int value) {
+            ACCESSOR.putInt(address + offset, value);
+        }
+
+        public long getLong(long offset) {
+            return ACCESSOR.getLong(address + offset);
+        }
+
+        public void putLong(long offset, long value) {
+            ACCESSOR.putLong(address + offset, value);
+        }
+
+        public float getFloat(long offset) {
+            return ACCESSOR.getFloat(address + offset);
+        }
+
+        public void putFloat(long offset, float value) {
+            ACCESSOR.putFloat(address + offset, value);
+        }
+
+        public double getDouble(long offset) {
+            return ACCESSOR.getDouble(address + offset);
+        }
+
+        public void putDouble(long offset, double value) {
+            ACCESSOR.putDouble(address + offset, value);
+        }
+
+        public @Pointer long getPointer(long offset) {
+            return ACCESSOR.getAddress(address + offset);
+        }
+
+        public void putPointer(long offset, @Pointer long value) {
+            ACCESSOR.putAddress(address + offset, value);
+        }
+
+        void setPosition(long index) {
+            this.index = index;
+            this.address = array.address + index * array.stride;
+        }
+    }
+
+    private static final class CursorSpliterator implements Spliterator<Cursor> {
+        private final StructArray array;
+        private long next;
+        private final long end;
+        private Cursor cursor;
+
+        CursorSpliterator(StructArray array, long start, long end) {
+            this.array = array;
+            this.next = start;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Cursor> action) {
+            if (next >= end) {
+                return false;
+            }
+            action.accept(cursorAt(next++));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Cursor> action) {
+            while (next < end) {
+                action.accept(cursorAt(next++));
+            }
+        }
+
+        @Override
+        public Spliterator<Cursor> trySplit() {
+            long middle = (next + end) >>> 1;
+            if (middle <= next) {
+                return null;
+            }
+            Spliterator<Cursor> prefix = new CursorSpliterator(array, next, middle);
+            next = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - next;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL;
+        }
+
+        private Cursor cursorAt(long index) {
+            if (cursor == null) {
+                cursor = new Cursor(array);
+            }
+            cursor.setPosition(index);
+            return cursor;
+        }
+    }
+}
@@ -2,11 +2,13 @@
 
 package com.github.novelrt.fumocement.layout;
 
+import org.jetbrains.annotations.Nullable;
+
 /**
  * Constructs a struct layout using the most common struct alignment rules.
  */
 public class StructLayoutArranger {
-    private final NativeLayouts nativeLayouts;
+    private final @Nullable NativeLayouts nativeLayouts;
     private long structAlignment = 1;
     private long structSize;
     private boolean complete = false;
@@ -19,40 +21,53 @@ public class StructLayoutArranger {
         this.nativeLayouts = nativeLayouts;
     }
 
+    /**
+     * Creates an arranger without any {@link NativeLayouts}, whose fields must be added with
+     * {@link #addField(TypeLayout)} or {@link #addFixedField(long)}.
+     * <p>
+     * Unlike {@link #StructLayoutArranger()}, this doesn't need {@link NativeLayouts#CURRENT_PLATFORM}, so it
+     * can be used to arrange the structs of other platforms, for instance at compile time.
+     *
+     * @return a new arranger without native layouts
+     */
+    public static StructLayoutArranger withoutNativeLayouts() {
+        return new StructLayoutArranger(null);
+    }
+
     public long addCBoolField() {
-        return addField(nativeLayouts.getBool());
+        return addField(nativeLayouts().getBool());
     }
 
     public long addCCharField() {
-        return addField(nativeLayouts.getChar());
+        return addField(nativeLayouts().getChar());
     }
 
     public long addCShortField() {
-        return addField(nativeLayouts.getShort());
+        return addField(nativeLayouts().getShort());
     }
 
     public long addCIntField() {
-        return addField(nativeLayouts.getInt());
+        return addField(nativeLayouts().getInt());
     }
 
     public long addCLongField() {
-        return addField(nativeLayouts.getLong());
+        return addField(nativeLayouts().getLong());
     }
 
     public long addCLongLongField() {
-        return addField(nativeLayouts.getLongLong());
+        return addField(nativeLayouts().getLongLong());
     }
 
     public long addCFloatField() {
-        return addField(nativeLayouts.getFloat());
+        return addField(nativeLayouts().getFloat());
     }
 
     public long addCDoubleField() {
-        return addField(nativeLayouts.getDouble());
+        return addField(nativeLayouts().getDouble());
     }
 
     public long addCPointerField() {
-        return addField(nativeLayouts.getPointer());
+        return addField(nativeLayouts().getPointer());
     }
 
     public long addFixedField(long size) {
@@ -80,6 +95,13 @@ public class StructLayoutArranger {
         return new TypeLayout(structSize, structAlignment);
     }
 
+    private NativeLayouts nativeLayouts() {
+        if (nativeLayouts == null) {
+            throw new IllegalStateException("Cannot add a C type field to a struct arranged without native layouts.");
+        }
+        return nativeLayouts;
+    }
+
     private long findAlignmentPadding(long containerSize, long alignment) {
         // The last modulo ensures that when (containerSize % alignment) == 0, the result becomes 0.
         return (alignment - (containerSize % alignment)) % alignment;
@@ -0,0 +1,194 @@
+// Copyright © Matt Jones and Contributors. Licensed under the MIT License (MIT). See LICENCE.md in the repository root for more information.
+
+package com.github.novelrt.fumocement.memory;
+
+import com.github.novelrt.fumocement.DisposalMethod;
+import com.github.novelrt.fumocement.NativeObject;
+import com.github.novelrt.fumocement.Pointer;
+
+/**
+ * A linear allocator using native memory, meant for data that must live until the end of a frame,
+ * such as parameters of render commands or temporary strings given to the engine.
+ * <p>
+ * Unlike a {@link NativeStack}, allocations can be done in any order and are never freed individually:
+ * they are all released at once when the arena moves to the next frame, by simply resetting a pointer.
+ * <p>
+ * The arena contains multiple frame buffers used in turns, so that the data of previous frames stays
+ * valid while the current frame is being written. With {@code frameCount} buffers, the memory allocated
+ * during a frame stays valid until {@link #nextFrame()} has been called {@code frameCount} times.
+ * For instance, with two buffers (double buffering), the data of frame N can be read by the engine while
+ * frame N+1 is being written.
+ * <p>
+ * <b>Example:</b>
+ * <pre>{@code FrameArena arena = new FrameArena(1024 * 1024, 2);
+ * while (running) {
+ *   arena.nextFrame();
+ *   long command = arena.allocate(COMMAND_SIZE);
+ *   // ...
+ * }
+ * }</pre>
+ * This class is not thread-safe.
+ */
+public class FrameArena extends NativeObject {
+    /**
+     * The default alignment of the allocations, matching the one of the system allocator.
+     */
+    public static final long DEFAULT_ALIGNMENT = 16;
+
+    private final long frameSize;
+    private final int frameCount;
+
+    private int frameIndex;
+    private long frameStart;
+    private long frameEnd;
+    private long pointer;
+
+    /**
+     * Creates a new arena with the given frame size and number of frame buffers,
+     * whose native memory is freed once garbage collected.
+     *
+     * @param frameSize  the size of a frame buffer, in bytes
+     * @param frameCount the number of frame buffers
+     * @throws IllegalArgumentException when the frame size or the number of frame buffers is invalid
+     */
+    public FrameArena(long frameSize, int frameCount) {
+        this(frameSize, frameCount, DisposalMethod.GARBAGE_COLLECTED);
+    }
+
+    /**
+     * Creates a new arena with the given frame size and number of frame buffers,
+     * and with the given {@link DisposalMethod}.
+     *
+     * @param frameSize      the size of a frame buffer, in bytes
+     * @param frameCount     the number of frame buffers
+     * @param disposalMethod the disposal method to use
+     * @throws IllegalArgumentException when the frame size or the number of frame buffers is invalid
+     */
+    public FrameArena(long frameSize, int frameCount, DisposalMethod disposalMethod) {
+        super(NativeMemory.access().allocateMemory(totalSize(frameSize, frameCount)),
+                true, disposalMethod, NativeMemory.freeMemoryDeleter());
+        this.frameSize = alignFrameSize(frameSize);
+        this.frameCount = frameCount;
+        selectFrame(0);
+    }
+
+    private static long alignFrameSize(long frameSize) {
+        // Keep each frame buffer aligned, as the system allocator would do.
+        return (frameSize + DEFAULT_ALIGNMENT - 1) & -DEFAULT_ALIGNMENT;
+    }
+
+    private static long totalSize(long frameSize, int frameCount) {
+        if (frameSize <= 0) {
+            throw new IllegalArgumentException("Invalid frame size: " + frameSize);
+        }
+        if (frameCount <= 0) {
+            throw new IllegalArgumentException("Invalid frame count: " + frameCount);
+        }
+        return Math.multiplyExact(alignFrameSize(frameSize), frameCount);
+    }
+
+    /**
+     * Allocates memory in the current frame, with the {@linkplain #DEFAULT_ALIGNMENT default alignment}.
+     *
+     * @param size the size of the allocation
+     * @return the address of the allocated memory
+     * @throws IllegalArgumentException when the size is negative
+     * @throws IllegalStateException    when the allocation doesn't fit in the rest of the current frame buffer
+     */
+    public final @Pointer long allocate(long size) {
+        return allocate(size, DEFAULT_ALIGNMENT);
+    }
+
+    /**
+     * Allocates memory in the current frame, with the given alignment.
+     *
+     * @param size      the size of the allocation
+     * @param alignment the alignment of the allocation, which must be a power of two
+     * @return the address of the allocated memory
+     * @throws IllegalArgumentException when the size is negative, or the alignment is not a power of two
+     * @throws IllegalStateException    when the allocation doesn't fit in the rest of the current frame buffer
+     */
+    public final @Pointer long allocate(long size, long alignment) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Invalid allocation size: " + size);
+        }
+        if (alignment <= 0 || (alignment & (alignment - 1)) != 0) {
+            throw new IllegalArgumentException("Invalid alignment: " + alignment);
+        }
+        long address = (pointer + alignment - 1) & -alignment;
+        // Checked before moving the pointer, as the memory past the frame belongs to the other frames.
+        if (size > frameEnd - address) {
+            throw overflow(size);
+        }
+        pointer = address + size;
+        return address;
+    }
+
+    /**
+     * Moves to the next frame buffer, releasing everything that has been allocated in it
+     * {@code frameCount} frames ago.
+     */
+    public final void nextFrame() {
+        int nextIndex = frameIndex + 1;
+        selectFrame(nextIndex == frameCount ? 0 : nextIndex);
+    }
+
+    /**
+     * Releases everything that has been allocated in the current frame.
+     */
+    public final void reset() {
+        pointer = frameStart;
+    }
+
+    /**
+     * Gets the size of a frame buffer, in bytes.
+     *
+     * @return the size of a frame buffer
+     */
+    public final long getFrameSize() {
+        return frameSize;
+    }
+
+    /**
+     * Gets the number of frame buffers of this arena.
+     *
+     * @return the number of frame buffers
+     */
+    public final int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Gets the index of the frame buffer in use, between {@code 0} and {@code frameCount - 1}.
+     *
+     * @return the index of the current frame buffer
+     */
+    public final int getFrameIndex() {
+        return frameIndex;
+    }
+
+    /**
+     * Gets how many bytes have been allocated in the current frame, including alignment padding.
+     *
+     * @return the number of allocated bytes in the current frame
+     */
+    public final long getUsedSize() {
+        return pointer - frameStart;
+    }
+
+    private void selectFrame(int index) {
+        frameIndex = index;
+        frameStart = getHandle() + index * frameSize;
+        frameEnd = frameStart + frameSize;
+        pointer = frameStart;
+    }
+
+    private IllegalStateException overflow(long allocSize) {
+        return new IllegalStateException(OverflowDiagnostics.describe("frame arena", allocSize, getFrameSize(),
+                "You may have allocated too much memory during a single frame.\n" +
+                "Consider allocating large or long-lived buffers elsewhere.",
+                "You may have forgotten to call nextFrame at the end of each frame.",
+                "The frame buffers are simply too small for the amount of memory you're allocating.\n" +
+                "Consider creating the arena with a larger frame size."));
+    }
+}
@@ -0,0 +1,188 @@
+// Copyright © Matt Jones and Contributors. Licensed under the MIT License (MIT). See LICENCE.md in the repository root for more information.
+
+package com.github.novelrt.fumocement.memory;
+
+import com.github.novelrt.fumocement.DisposalMethod;
+import com.github.novelrt.fumocement.NativeObject;
+import com.github.novelrt.fumocement.Pointer;
+import com.github.novelrt.fumocement.Pointers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A region of a file mapped into memory, whose content can be given to native code as a pointer, without copying
+ * it into the Java heap or into native memory first.
+ * <p>
+ * Pages are read from the file, or from the page cache, the first time they are accessed. {@link #load()} can be
+ * used to read the whole region up-front, for instance on a loading thread before a native decoder uses it.
+ * A region is unmapped once deleted, according to its {@link DisposalMethod}, and must not be used afterwards.
+ * <p>
+ * A region can't be larger than {@value Integer#MAX_VALUE} bytes: larger files must be mapped in multiple regions.
+ * <p>
+ * <b>Example:</b>
+ * <pre>{@code try (MappedRegion pack = MappedRegion.map(path, MappedRegion.Mode.READ_ONLY)) {
+ *   pack.load();
+ *   decodeTexture(pack.getAddress() + textureOffset, textureSize);
+ * }
+ * }</pre>
+ */
+public final class MappedRegion extends NativeObject {
+    private final MappedByteBuffer buffer;
+    private final long length;
+    private final Mode mode;
+
+    private MappedRegion(MappedByteBuffer buffer, Mode mode, DisposalMethod disposalMethod) {
+        super(Pointers.getByteBufferLocation(buffer), true, disposalMethod,
+                handle -> NativeMemory.access().freeDirectBuffer(buffer));
+        this.buffer = buffer;
+        this.length = buffer.capacity();
+        this.mode = mode;
+    }
+
+    /**
+     * Maps a whole file into memory. The region is unmapped once garbage collected.
+     *
+     * @param path the path of the file
+     * @param mode how the region can be accessed
+     * @return the mapped region
+     * @throws IOException              when the file can't be opened or mapped
+     * @throws IllegalArgumentException when the file is larger than {@value Integer#MAX_VALUE} bytes
+     */
+    public static MappedRegion map(Path path, Mode mode) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, mode.openOptions)) {
+            return map(channel, mode, 0, channel.size(), DisposalMethod.GARBAGE_COLLECTED);
+        }
+    }
+
+    /**
+     * Maps {@code length} bytes of a file into memory, starting at {@code offset}, with the given
+     * {@link DisposalMethod}.
+     *
+     * @param path           the path of the file
+     * @param mode           how the region can be accessed
+     * @param offset         the position of the region in the file
+     * @param length         the length of the region
+     * @param disposalMethod the disposal method to use
+     * @return the mapped region
+     * @throws IOException              when the file can't be opened or mapped
+     * @throws IllegalArgumentException when the offset or the length is invalid
+     */
+    public static MappedRegion map(Path path, Mode mode, long offset, long length, DisposalMethod disposalMethod)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(path, mode.openOptions)) {
+            return map(channel, mode, offset, length, disposalMethod);
+        }
+    }
+
+    /**
+     * Maps {@code length} bytes of a file channel into memory, starting at {@code offset}, with the given
+     * {@link DisposalMethod}. The region stays mapped after the channel is closed.
+     *
+     * @param channel        the file channel, which must be opened for reading, and for writing unless the mode is
+     *                       {@link Mode#READ_ONLY}
+     * @param mode           how the region can be accessed
+     * @param offset         the position of the region in the file
+     * @param length         the length of the region
+     * @param disposalMethod the disposal method to use
+     * @return the mapped region
+     * @throws IOException              when the file can't be mapped
+     * @throws IllegalArgumentException when the offset or the length is invalid
+     */
+    public static MappedRegion map(FileChannel channel,
+                                   Mode mode,
+                                   long offset,
+                                   long length,
+                                   DisposalMethod disposalMethod) throws IOException {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Invalid region offset: " + offset);
+        }
+        if (length < 0 || length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid region length: " + length);
+        }
+        return new MappedRegion(channel.map(mode.mapMode, offset, length), mode, disposalMethod);
+    }
+
+    public @Pointer long getAddress() {
+        return getHandle();
+    }
+
+    public long length() {
+        return length;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Gets a view of this region as a {@link ByteBuffer}, using the native byte order.
+     * The buffer is read-only when the mode is {@link Mode#READ_ONLY}, and must not be used once the region is deleted.
+     *
+     * @return a view of the memory of this region
+     */
+    public ByteBuffer asByteBuffer() {
+        getHandle();
+        return buffer.duplicate().order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Reads the whole region into physical memory, so that accessing it later doesn't wait for the disk.
+     */
+    public void load() {
+        getHandle();
+        buffer.load();
+    }
+
+    /**
+     * Tells whether the region is likely to be entirely in physical memory.
+     *
+     * @return {@code true} if the region is probably loaded
+     */
+    public boolean isLoaded() {
+        getHandle();
+        return buffer.isLoaded();
+    }
+
+    /**
+     * Writes the changes made to a {@link Mode#READ_WRITE} region to the file.
+     */
+    public void force() {
+        getHandle();
+        if (mode == Mode.READ_WRITE) {
+            buffer.force();
+        }
+    }
+
+    /**
+     * How a mapped region can be accessed.
+     */
+    public enum Mode {
+        /**
+         * The region can only be read. Writing to it crashes the JVM.
+         */
+        READ_ONLY(FileChannel.MapMode.READ_ONLY, StandardOpenOption.READ),
+        /**
+         * The region can be read and written, and changes are written to the file.
+         */
+        READ_WRITE(FileChannel.MapMode.READ_WRITE, StandardOpenOption.READ, StandardOpenOption.WRITE),
+        /**
+         * The region can be read and written, but changes are private to the region and never written to the file.
+         * The file must still be writable.
+         */
+        PRIVATE(FileChannel.MapMode.PRIVATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        private final FileChannel.MapMode mapMode;
+        private final StandardOpenOption[] openOptions;
+
+        Mode(FileChannel.MapMode mapMode, StandardOpenOption... openOptions) {
+            this.mapMode = mapMode;
+            this.openOptions = openOptions;
+        }
+    }
+}
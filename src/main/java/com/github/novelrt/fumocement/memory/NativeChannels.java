@@ -0,0 +1,303 @@
+// Copyright © Matt Jones and Contributors. Licensed under the MIT License (MIT). See LICENCE.md in the repository root for more information.
+
+package com.github.novelrt.fumocement.memory;
+
+import com.github.novelrt.fumocement.Pointer;
+import com.github.novelrt.fumocement.Pointers;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Reads and writes native memory straight from and to channels, such as a {@link FileChannel} or
+ * a {@link java.nio.channels.SocketChannel}.
+ * <p>
+ * The memory is wrapped in direct {@code ByteBuffer}s using {@link Pointers#asByteBuffer(long, int)},
+ * which the channels give to the operating system as they are, so the data never goes through a Java array.
+ * Several regions can be read or written with a single system call, using the scattering and gathering methods.
+ * <p>
+ * The {@code readFully} and {@code writeFully} methods loop until every byte has been transferred,
+ * and are meant for channels in blocking mode.
+ * <p>
+ * <b>Example:</b>
+ * <pre>{@code try (FileChannel save = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+ *   NativeChannels.writeFully(save,
+ *       new long[] { header.getHandle(), world.getStateAddress() },
+ *       new int[] { HEADER_SIZE, world.getStateSize() });
+ * }
+ * }</pre>
+ */
+public final class NativeChannels {
+    private NativeChannels() {
+    }
+
+    /**
+     * Reads up to {@code size} bytes from a channel into native memory, with a single read.
+     *
+     * @param channel the channel to read from
+     * @param address the address of the memory to write to
+     * @param size    the maximum number of bytes to read
+     * @return the number of bytes read, or {@code -1} if the channel has reached its end
+     * @throws IOException              when the channel can't be read
+     * @throws IllegalArgumentException when the size is negative
+     */
+    public static int read(ReadableByteChannel channel, @Pointer long address, int size) throws IOException {
+        return channel.read(Pointers.asByteBuffer(address, size));
+    }
+
+    /**
+     * Reads up to {@code size} bytes from a file channel into native memory, with a single read starting at
+     * the given position of the file. The position of the channel isn't changed.
+     *
+     * @param channel  the file channel to read from
+     * @param address  the address of the memory to write to
+     * @param size     the maximum number of bytes to read
+     * @param position the position of the file to read from
+     * @return the number of bytes read, or {@code -1} if the position is past the end of the file
+     * @throws IOException              when the channel can't be read
+     * @throws IllegalArgumentException when the size or the position is negative
+     */
+    public static int read(FileChannel channel, @Pointer long address, int size, long position) throws IOException {
+        return channel.read(Pointers.asByteBuffer(address, size), position);
+    }
+
+    /**
+     * Reads exactly {@code size} bytes from a channel into native memory.
+     *
+     * @param channel the channel to read from
+     * @param address the address of the memory to write to
+     * @param size    the number of bytes to read
+     * @throws IOException              when the channel can't be read
+     * @throws EOFException             when the channel reaches its end before {@code size} bytes have been read
+     * @throws IllegalArgumentException when the size is negative
+     */
+    public static void readFully(ReadableByteChannel channel, @Pointer long address, long size) throws IOException {
+        validateSize(size);
+        long read = 0;
+        while (read < size) {
+            ByteBuffer buffer = bufferAt(address, read, size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Cannot read " + size + " bytes: the channel has ended after " +
+                                           (read + buffer.position()) + " bytes.");
+                }
+            }
+            read += buffer.capacity();
+        }
+    }
+
+    /**
+     * Reads exactly {@code size} bytes from a file channel into native memory, starting at the given position
+     * of the file. The position of the channel isn't changed.
+     *
+     * @param channel  the file channel to read from
+     * @param address  the address of the memory to write to
+     * @param size     the number of bytes to read
+     * @param position the position of the file to read from
+     * @throws IOException              when the channel can't be read
+     * @throws EOFException             when the file ends before {@code size} bytes have been read
+     * @throws IllegalArgumentException when the size or the position is negative
+     */
+    public static void readFully(FileChannel channel, @Pointer long address, long size, long position)
+            throws IOException {
+        validateSize(size);
+        long read = 0;
+        while (read < size) {
+            ByteBuffer buffer = bufferAt(address, read, size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + read + buffer.position()) < 0) {
+                    throw new EOFException("Cannot read " + size + " bytes: the file has ended after " +
+                                           (read + buffer.position()) + " bytes.");
+                }
+            }
+            read += buffer.capacity();
+        }
+    }
+
+    /**
+     * Reads from a channel into multiple regions of native memory, filling them in order, with a single read.
+     *
+     * @param channel   the channel to read from
+     * @param addresses the addresses of the regions
+     * @param sizes     the sizes of the regions
+     * @return the number of bytes read, or {@code -1} if the channel has reached its end
+     * @throws IOException              when the channel can't be read
+     * @throws IllegalArgumentException when the arrays don't have the same length, or when a size is negative
+     */
+    public static long read(ScatteringByteChannel channel, @Pointer long[] addresses, int[] sizes)
+            throws IOException {
+        return channel.read(buffersOf(addresses, sizes));
+    }
+
+    /**
+     * Reads from a channel into multiple regions of native memory, filling them in order, until
+     * they are all full.
+     *
+     * @param channel   the channel to read from
+     * @param addresses the addresses of the regions
+     * @param sizes     the sizes of the regions
+     * @throws IOException              when the channel can't be read
+     * @throws EOFException             when the channel reaches its end before the regions are full
+     * @throws IllegalArgumentException when the arrays don't have the same length, or when a size is negative
+     */
+    public static void readFully(ScatteringByteChannel channel, @Pointer long[] addresses, int[] sizes)
+            throws IOException {
+        ByteBuffer[] buffers = buffersOf(addresses, sizes);
+        long size = totalSizeOf(sizes);
+        long read = 0;
+        while (read < size) {
+            long count = channel.read(buffers);
+            if (count < 0) {
+                throw new EOFException("Cannot read " + size + " bytes: the channel has ended after " +
+                                       read + " bytes.");
+            }
+            read += count;
+        }
+    }
+
+    /**
+     * Writes up to {@code size} bytes of native memory to a channel, with a single write.
+     *
+     * @param channel the channel to write to
+     * @param address the address of the memory to read from
+     * @param size    the maximum number of bytes to write
+     * @return the number of bytes written
+     * @throws IOException              when the channel can't be written
+     * @throws IllegalArgumentException when the size is negative
+     */
+    public static int write(WritableByteChannel channel, @Pointer long address, int size) throws IOException {
+        return channel.write(Pointers.asByteBuffer(address, size));
+    }
+
+    /**
+     * Writes up to {@code size} bytes of native memory to a file channel, with a single write starting at
+     * the given position of the file. The position of the channel isn't changed.
+     *
+     * @param channel  the file channel to write to
+     * @param address  the address of the memory to read from
+     * @param size     the maximum number of bytes to write
+     * @param position the position of the file to write to
+     * @return the number of bytes written
+     * @throws IOException              when the channel can't be written
+     * @throws IllegalArgumentException when the size or the position is negative
+     */
+    public static int write(FileChannel channel, @Pointer long address, int size, long position) throws IOException {
+        return channel.write(Pointers.asByteBuffer(address, size), position);
+    }
+
+    /**
+     * Writes exactly {@code size} bytes of native memory to a channel.
+     *
+     * @param channel the channel to write to
+     * @param address the address of the memory to read from
+     * @param size    the number of bytes to write
+     * @throws IOException              when the channel can't be written
+     * @throws IllegalArgumentException when the size is negative
+     */
+    public static void writeFully(WritableByteChannel channel, @Pointer long address, long size) throws IOException {
+        validateSize(size);
+        long written = 0;
+        while (written < size) {
+            ByteBuffer buffer = bufferAt(address, written, size);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            written += buffer.capacity();
+        }
+    }
+
+    /**
+     * Writes exactly {@code size} bytes of native memory to a file channel, starting at the given position
+     * of the file. The position of the channel isn't changed.
+     *
+     * @param channel  the file channel to write to
+     * @param address  the address of the memory to read from
+     * @param size     the number of bytes to write
+     * @param position the position of the file to write to
+     * @throws IOException              when the channel can't be written
+     * @throws IllegalArgumentException when the size or the position is negative
+     */
+    public static void writeFully(FileChannel channel, @Pointer long address, long size, long position)
+            throws IOException {
+        validateSize(size);
+        long written = 0;
+        while (written < size) {
+            ByteBuffer buffer = bufferAt(address, written, size);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, position + written + buffer.position());
+            }
+            written += buffer.capacity();
+        }
+    }
+
+    /**
+     * Writes multiple regions of native memory to a channel, in order, with a single write.
+     *
+     * @param channel   the channel to write to
+     * @param addresses the addresses of the regions
+     * @param sizes     the sizes of the regions
+     * @return the number of bytes written
+     * @throws IOException              when the channel can't be written
+     * @throws IllegalArgumentException when the arrays don't have the same length, or when a size is negative
+     */
+    public static long write(GatheringByteChannel channel, @Pointer long[] addresses, int[] sizes)
+            throws IOException {
+        return channel.write(buffersOf(addresses, sizes));
+    }
+
+    /**
+     * Writes every byte of multiple regions of native memory to a channel, in order.
+     *
+     * @param channel   the channel to write to
+     * @param addresses the addresses of the regions
+     * @param sizes     the sizes of the regions
+     * @throws IOException              when the channel can't be written
+     * @throws IllegalArgumentException when the arrays don't have the same length, or when a size is negative
+     */
+    public static void writeFully(GatheringByteChannel channel, @Pointer long[] addresses, int[] sizes)
+            throws IOException {
+        ByteBuffer[] buffers = buffersOf(addresses, sizes);
+        long size = totalSizeOf(sizes);
+        long written = 0;
+        while (written < size) {
+            written += channel.write(buffers);
+        }
+    }
+
+    private static void validateSize(long size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Invalid size: " + size);
+        }
+    }
+
+    // Buffers can't hold more than 2 GB, so larger regions are transferred in multiple parts.
+    private static ByteBuffer bufferAt(long address, long offset, long size) {
+        return Pointers.asByteBuffer(address + offset, (int) Math.min(size - offset, Integer.MAX_VALUE));
+    }
+
+    private static ByteBuffer[] buffersOf(long[] addresses, int[] sizes) {
+        if (addresses.length != sizes.length) {
+            throw new IllegalArgumentException("Cannot use " + addresses.length + " addresses with " +
+                                               sizes.length + " sizes.");
+        }
+        ByteBuffer[] buffers = new ByteBuffer[addresses.length];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = Pointers.asByteBuffer(addresses[i], sizes[i]);
+        }
+        return buffers;
+    }
+
+    private static long totalSizeOf(int[] sizes) {
+        long size = 0;
+        for (int regionSize : sizes) {
+            size += regionSize;
+        }
+        return size;
+    }
+}
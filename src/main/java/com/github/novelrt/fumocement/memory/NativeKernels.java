@@ -0,0 +1,308 @@
+// Copyright © Matt Jones and Contributors. Licensed under the MIT License (MIT). See LICENCE.md in the repository root for more information.
+
+package com.github.novelrt.fumocement.memory;
+
+import com.github.novelrt.fumocement.Pointer;
+
+import java.util.ServiceLoader;
+
+/**
+ * Provides bulk operations over large ranges of {@code float} and {@code int} values stored natively,
+ * such as vertex transforms, audio mixing or colour conversion.
+ * <p>
+ * When the optional {@code novelrt.fumocement.vector} module and the {@code jdk.incubator.vector} module are
+ * available (for instance with {@code --add-modules jdk.incubator.vector}), the operations use the Vector API
+ * to process multiple values at once. Otherwise, they fall back to scalar loops through the
+ * {@link NativeMemoryAccessor}. The Vector API is kept out of this module, as it is still incubating.
+ * The Vector API can be disabled by setting the {@code novelrt.fumocement.kernels.vectorize} system property
+ * to {@code false}.
+ * <p>
+ * Operations with both a source and a destination range can work in place, when both ranges start at
+ * the same address. Any other overlap gives undefined results.
+ * <p>
+ * <b>Example:</b>
+ * <pre>{@code // Mix two audio tracks, and lower the volume.
+ * NativeKernels.addFloats(output, trackA, trackB, sampleCount);
+ * NativeKernels.scaleFloats(output, output, sampleCount, 0.5f);
+ * }</pre>
+ */
+public final class NativeKernels {
+    private static final Implementation IMPLEMENTATION = findImplementation();
+
+    private NativeKernels() {
+    }
+
+    private static Implementation findImplementation() {
+        Implementation scalar = new ScalarKernels(NativeMemory.access());
+        boolean vectorize = Boolean.parseBoolean(System.getProperty("novelrt.fumocement.kernels.vectorize", "true"));
+        // The vectorized implementation can't be loaded when the incubator module is missing.
+        if (vectorize && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            return ServiceLoader.load(Provider.class)
+                    .findFirst()
+                    .map(provider -> provider.create(scalar))
+                    .orElse(scalar);
+        }
+        return scalar;
+    }
+
+    /**
+     * Gets whether the operations use the Vector API.
+     *
+     * @return {@code true} if the operations are vectorized
+     */
+    public static boolean isVectorized() {
+        return IMPLEMENTATION.isVectorized();
+    }
+
+    /**
+     * Sets {@code count} consecutive {@code float} values to the given value.
+     *
+     * @param dst   the address of the first value
+     * @param count the number of values to set
+     * @param value the value to set
+     */
+    public static void fillFloats(@Pointer("float*") long dst, long count, float value) {
+        IMPLEMENTATION.fillFloats(dst, count, value);
+    }
+
+    /**
+     * Sets {@code count} consecutive {@code int32_t} values to the given value.
+     *
+     * @param dst   the address of the first value
+     * @param count the number of values to set
+     * @param value the value to set
+     */
+    public static void fillInts(@Pointer("int32_t*") long dst, long count, int value) {
+        IMPLEMENTATION.fillInts(dst, count, value);
+    }
+
+    /**
+     * Computes {@code dst[i] = a[i] + b[i]} for {@code count} {@code float} values.
+     *
+     * @param dst   the address of the destination values
+     * @param a     the address of the first operands
+     * @param b     the address of the second operands
+     * @param count the number of values
+     */
+    public static void addFloats(@Pointer("float*") long dst,
+                                 @Pointer("float*") long a,
+                                 @Pointer("float*") long b,
+                                 long count) {
+        IMPLEMENTATION.addFloats(dst, a, b, count);
+    }
+
+    /**
+     * Computes {@code dst[i] = a[i] + b[i]} for {@code count} {@code int32_t} values, wrapping around on overflow.
+     *
+     * @param dst   the address of the destination values
+     * @param a     the address of the first operands
+     * @param b     the address of the second operands
+     * @param count the number of values
+     */
+    public static void addInts(@Pointer("int32_t*") long dst,
+                               @Pointer("int32_t*") long a,
+                               @Pointer("int32_t*") long b,
+                               long count) {
+        IMPLEMENTATION.addInts(dst, a, b, count);
+    }
+
+    /**
+     * Computes {@code dst[i] = src[i] * factor} for {@code count} {@code float} values.
+     *
+     * @param dst    the address of the destination values
+     * @param src    the address of the source values
+     * @param count  the number of values
+     * @param factor the factor to multiply the values with
+     */
+    public static void scaleFloats(@Pointer("float*") long dst, @Pointer("float*") long src, long count, float factor) {
+        IMPLEMENTATION.scaleFloats(dst, src, count, factor);
+    }
+
+    /**
+     * Computes {@code dst[i] = src[i] * factor} for {@code count} {@code int32_t} values,
+     * wrapping around on overflow.
+     *
+     * @param dst    the address of the destination values
+     * @param src    the address of the source values
+     * @param count  the number of values
+     * @param factor the factor to multiply the values with
+     */
+    public static void scaleInts(@Pointer("int32_t*") long dst, @Pointer("int32_t*") long src, long count, int factor) {
+        IMPLEMENTATION.scaleInts(dst, src, count, factor);
+    }
+
+    /**
+     * Gets the smallest of {@code count} {@code float} values, following the rules of {@link Math#min(float, float)}.
+     *
+     * @param src   the address of the first value
+     * @param count the number of values
+     * @return the smallest value, or {@link Float#POSITIVE_INFINITY} when {@code count} is zero
+     */
+    public static float minFloat(@Pointer("float*") long src, long count) {
+        return IMPLEMENTATION.minFloat(src, count);
+    }
+
+    /**
+     * Gets the largest of {@code count} {@code float} values, following the rules of {@link Math#max(float, float)}.
+     *
+     * @param src   the address of the first value
+     * @param count the number of values
+     * @return the largest value, or {@link Float#NEGATIVE_INFINITY} when {@code count} is zero
+     */
+    public static float maxFloat(@Pointer("float*") long src, long count) {
+        return IMPLEMENTATION.maxFloat(src, count);
+    }
+
+    /**
+     * Gets the sum of {@code count} {@code float} values.
+     * <p>
+     * The values may be added in any order, so the result can differ slightly between implementations.
+     *
+     * @param src   the address of the first value
+     * @param count the number of values
+     * @return the sum of the values
+     */
+    public static float sumFloat(@Pointer("float*") long src, long count) {
+        return IMPLEMENTATION.sumFloat(src, count);
+    }
+
+    /**
+     * Gets the smallest of {@code count} {@code int32_t} values.
+     *
+     * @param src   the address of the first value
+     * @param count the number of values
+     * @return the smallest value, or {@link Integer#MAX_VALUE} when {@code count} is zero
+     */
+    public static int minInt(@Pointer("int32_t*") long src, long count) {
+        return IMPLEMENTATION.minInt(src, count);
+    }
+
+    /**
+     * Gets the largest of {@code count} {@code int32_t} values.
+     *
+     * @param src   the address of the first value
+     * @param count the number of values
+     * @return the largest value, or {@link Integer#MIN_VALUE} when {@code count} is zero
+     */
+    public static int maxInt(@Pointer("int32_t*") long src, long count) {
+        return IMPLEMENTATION.maxInt(src, count);
+    }
+
+    /**
+     * Gets the sum of {@code count} {@code int32_t} values, wrapping around on overflow.
+     *
+     * @param src   the address of the first value
+     * @param count the number of values
+     * @return the sum of the values
+     */
+    public static int sumInt(@Pointer("int32_t*") long src, long count) {
+        return IMPLEMENTATION.sumInt(src, count);
+    }
+
+    /**
+     * Converts {@code count} {@code float} values to {@code int32_t} values, like a Java {@code (int)} cast.
+     *
+     * @param dst   the address of the destination values
+     * @param src   the address of the source values
+     * @param count the number of values
+     */
+    public static void convertFloatsToInts(@Pointer("int32_t*") long dst, @Pointer("float*") long src, long count) {
+        IMPLEMENTATION.convertFloatsToInts(dst, src, count, 1);
+    }
+
+    /**
+     * Computes {@code dst[i] = (int) (src[i] * scale)} for {@code count} values, for instance to convert
+     * colour components from {@code [0, 1]} to {@code [0, 255]}.
+     *
+     * @param dst   the address of the destination {@code int32_t} values
+     * @param src   the address of the source {@code float} values
+     * @param count the number of values
+     * @param scale the factor to multiply the values with before converting them
+     */
+    public static void convertFloatsToInts(@Pointer("int32_t*") long dst,
+                                           @Pointer("float*") long src,
+                                           long count,
+                                           float scale) {
+        IMPLEMENTATION.convertFloatsToInts(dst, src, count, scale);
+    }
+
+    /**
+     * Converts {@code count} {@code int32_t} values to {@code float} values, like a Java {@code (float)} cast.
+     *
+     * @param dst   the address of the destination values
+     * @param src   the address of the source values
+     * @param count the number of values
+     */
+    public static void convertIntsToFloats(@Pointer("float*") long dst, @Pointer("int32_t*") long src, long count) {
+        IMPLEMENTATION.convertIntsToFloats(dst, src, count, 1);
+    }
+
+    /**
+     * Computes {@code dst[i] = src[i] * scale} for {@code count} values, for instance to convert
+     * audio samples to {@code [-1, 1]}.
+     *
+     * @param dst   the address of the destination {@code float} values
+     * @param src   the address of the source {@code int32_t} values
+     * @param count the number of values
+     * @param scale the factor to multiply the converted values with
+     */
+    public static void convertIntsToFloats(@Pointer("float*") long dst,
+                                           @Pointer("int32_t*") long src,
+                                           long count,
+                                           float scale) {
+        IMPLEMENTATION.convertIntsToFloats(dst, src, count, scale);
+    }
+
+    /**
+     * An implementation of the operations of {@link NativeKernels}, which have the same contracts as the static
+     * methods of the same name. The conversions always take a scale, which is {@code 1} for plain conversions.
+     */
+    public interface Implementation {
+        boolean isVectorized();
+
+        void fillFloats(@Pointer("float*") long dst, long count, float value);
+
+        void fillInts(@Pointer("int32_t*") long dst, long count, int value);
+
+        void addFloats(@Pointer("float*") long dst, @Pointer("float*") long a, @Pointer("float*") long b, long count);
+
+        void addInts(@Pointer("int32_t*") long dst,
+                     @Pointer("int32_t*") long a,
+                     @Pointer("int32_t*") long b,
+                     long count);
+
+        void scaleFloats(@Pointer("float*") long dst, @Pointer("float*") long src, long count, float factor);
+
+        void scaleInts(@Pointer("int32_t*") long dst, @Pointer("int32_t*") long src, long count, int factor);
+
+        float minFloat(@Pointer("float*") long src, long count);
+
+        float maxFloat(@Pointer("float*") long src, long count);
+
+        float sumFloat(@Pointer("float*") long src, long count);
+
+        int minInt(@Pointer("int32_t*") long src, long count);
+
+        int maxInt(@Pointer("int32_t*") long src, long count);
+
+        int sumInt(@Pointer("int32_t*") long src, long count);
+
+        void convertFloatsToInts(@Pointer("int32_t*") long dst, @Pointer("float*") long src, long count, float scale);
+
+        void convertIntsToFloats(@Pointer("float*") long dst, @Pointer("int32_t*") long src, long count, float scale);
+    }
+
+    /**
+     * Provides a faster {@link Implementation}, such as the vectorized one of the {@code novelrt.fumocement.vector}
+     * module. Providers are loaded with a {@link ServiceLoader}, and the first one found is used.
+     */
+    public interface Provider {
+        /**
+         * Creates the implementation.
+         *
+         * @param fallback the portable implementation, for the operations or the ranges that aren't worth optimizing
+         * @return the implementation
+         */
+        Implementation create(Implementation fallback);
+    }
+}
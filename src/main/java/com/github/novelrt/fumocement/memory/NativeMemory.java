@@ -2,6 +2,8 @@
 
 package com.github.novelrt.fumocement.memory;
 
+import com.github.novelrt.fumocement.HandleDeleter;
+import com.github.novelrt.fumocement.HandleReleasePipeline;
 import com.github.novelrt.fumocement.Pointer;
 import sun.misc.Unsafe;
 
@@ -20,4 +22,48 @@ public final class NativeMemory {
     public static NativeMemoryAccessor access() {
         return NativeMemoryAccessor.getInstance();
     }
+
+    /**
+     * Provides the shared {@link NativeMemoryPool}, which can be used to allocate small blocks
+     * of native memory without going through the system allocator every time.
+     *
+     * @return the shared {@link NativeMemoryPool}
+     */
+    public static NativeMemoryPool pool() {
+        return SharedPool.INSTANCE;
+    }
+
+    /**
+     * Provides a shared {@link HandleDeleter} freeing memory allocated with
+     * {@link NativeMemoryAccessor#allocateMemory(long)}.
+     * <p>
+     * Using this instance instead of a new method reference allows the {@link HandleReleasePipeline}
+     * to release the memory of many objects in the same batch.
+     *
+     * @return a {@link HandleDeleter} freeing native memory
+     */
+    public static HandleDeleter freeMemoryDeleter() {
+        return FreeMemoryDeleter.INSTANCE;
+    }
+
+    private static final class FreeMemoryDeleter implements HandleDeleter {
+        static final FreeMemoryDeleter INSTANCE = new FreeMemoryDeleter();
+
+        @Override
+        public void deleteHandle(@Pointer long handle) {
+            access().freeMemory(handle);
+        }
+
+        @Override
+        public void deleteHandles(@Pointer long[] handles, int count) {
+            NativeMemoryAccessor accessor = access();
+            for (int i = 0; i < count; i++) {
+                accessor.freeMemory(handles[i]);
+            }
+        }
+    }
+
+    private static final class SharedPool {
+        static final NativeMemoryPool INSTANCE = new NativeMemoryPool();
+    }
 }
@@ -6,7 +6,11 @@ import com.github.novelrt.fumocement.Pointer;
 import com.github.novelrt.fumocement.layout.NativeLayouts;
 import org.jetbrains.annotations.Nullable;
 
+import java.lang.invoke.VarHandle;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
 import java.util.Comparator;
+import java.util.Objects;
 import java.util.ServiceLoader;
 
 public interface NativeMemoryAccessor {
@@ -23,6 +27,7 @@ public interface NativeMemoryAccessor {
         return ServiceLoader.load(NativeMemoryAccessor.class)
                 .stream()
                 .map(ServiceLoader.Provider::get)
+                .filter(accessor -> accessor.getPriority() != ImplementationPriority.UNSUPPORTED)
                 .max(Comparator.comparing(NativeMemoryAccessor::getPriority)) // Highest prio
                 .orElse(null);
     }
@@ -152,6 +157,443 @@ public interface NativeMemoryAccessor {
         putDouble(address, value);
     }
 
+    /**
+     * Copies {@code length} values of type {@code byte} from native memory to an array.
+     *
+     * @param address the address of the first value to read
+     * @param array   the destination array
+     * @param offset  the index of the first value to write in the array
+     * @param length  the number of values to copy
+     * @throws IndexOutOfBoundsException when the range is out of the bounds of the array
+     */
+    default void getByteArray(@Pointer long address, byte[] array, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, array.length);
+        for (int i = 0; i < length; i++) {
+            array[offset + i] = getByte(address + i);
+        }
+    }
+
+    /**
+     * Copies {@code length} values of type {@code byte} from an array to native memory.
+     *
+     * @param address the address of the first value to write
+     * @param array   the source array
+     * @param offset  the index of the first value to read in the array
+     * @param length  the number of values to copy
+     * @throws IndexOutOfBoundsException when the range is out of the bounds of the array
+     */
+    default void putByteArray(@Pointer long address, byte[] array, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, array.length);
+        for (int i = 0; i < length; i++) {
+            putByte(address + i, array[offset + i]);
+        }
+    }
+
+    /**
+     * Copies {@code length} values of type {@code short} from native memory to an array.
+     *
+     * @param address the address of the first value to read
+     * @param array   the destination array
+     * @param offset  the index of the first value to write in the array
+     * @param length  the number of values to copy
+     * @throws IndexOutOfBoundsException when the range is out of the bounds of the array
+     */
+    default void getShortArray(@Pointer long address, short[] array, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, array.length);
+        for (int i = 0; i < length; i++) {
+            array[offset + i] = getShort(address + (long) i * 2);
+        }
+    }
+
+    /**
+     * Copies {@code length} values of type {@code short} from an array to native memory.
+     *
+     * @param address the address of the first value to write
+     * @param array   the source array
+     * @param offset  the index of the first value to read in the array
+     * @param length  the number of values to copy
+     * @throws IndexOutOfBoundsException when the range is out of the bounds of the array
+     */
+    default void putShortArray(@Pointer long address, short[] array, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, array.length);
+        for (int i = 0; i < length; i++) {
+            putShort(address + (long) i * 2, array[offset + i]);
+        }
+    }
+
+    /**
+     * Copies {@code length} values of type {@code int} from native memory to an array.
+     *
+     * @param address the address of the first value to read
+     * @param array   the destination array
+     * @param offset  the index of the first value to write in the array
+     * @param length  the number of values to copy
+     * @throws IndexOutOfBoundsException when the range is out of the bounds of the array
+     */
+    default void getIntArray(@Pointer long address, int[] array, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, array.length);
+        for (int i = 0; i < length; i++) {
+            array[offset + i] = getInt(address + (long) i * 4);
+        }
+    }
+
+    /**
+     * Copies {@code length} values of type {@code int} from an array to native memory.
+     *
+     * @param address the address of the first value to write
+     * @param array   the source array
+     * @param offset  the index of the first value to read in the array
+     * @param length  the number of values to copy
+     * @throws IndexOutOfBoundsException when the range is out of the bounds of the array
+     */
+    default void putIntArray(@Pointer long address, int[] array, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, array.length);
+        for (int i = 0; i < length; i++) {
+            putInt(address + (long) i * 4, array[offset + i]);
+        }
+    }
+
+    /**
+     * Copies {@code length} values of type {@code long} from native memory to an array.
+     *
+     * @param address the address of the first value to read
+     * @param array   the destination array
+     * @param offset  the index of the first value to write in the array
+     * @param length  the number of values to copy
+     * @throws IndexOutOfBoundsException when the range is out of the bounds of the array
+     */
+    default void getLongArray(@Pointer long address, long[] array, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, array.length);
+        for (int i = 0; i < length; i++) {
+            array[offset + i] = getLong(address + (long) i * 8);
+        }
+    }
+
+    /**
+     * Copies {@code length} values of type {@code long} from an array to native memory.
+     *
+     * @param address the address of the first value to write
+     * @param array   the source array
+     * @param offset  the index of the first value to read in the array
+     * @param length  the number of values to copy
+     * @throws IndexOutOfBoundsException when the range is out of the bounds of the array
+     */
+    default void putLongArray(@Pointer long address, long[] array, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, array.length);
+        for (int i = 0; i < length; i++) {
+            putLong(address + (long) i * 8, array[offset + i]);
+        }
+    }
+
+    /**
+     * Copies {@code length} values of type {@code float} from native memory to an array.
+     *
+     * @param address the address of the first value to read
+     * @param array   the destination array
+     * @param offset  the index of the first value to write in the array
+     * @param length  the number of values to copy
+     * @throws IndexOutOfBoundsException when the range is out of the bounds of the array
+     */
+    default void getFloatArray(@Pointer long address, float[] array, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, array.length);
+        for (int i = 0; i < length; i++) {
+            array[offset + i] = getFloat(address + (long) i * 4);
+        }
+    }
+
+    /**
+     * Copies {@code length} values of type {@code float} from an array to native memory.
+     *
+     * @param address the address of the first value to write
+     * @param array   the source array
+     * @param offset  the index of the first value to read in the array
+     * @param length  the number of values to copy
+     * @throws IndexOutOfBoundsException when the range is out of the bounds of the array
+     */
+    default void putFloatArray(@Pointer long address, float[] array, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, array.length);
+        for (int i = 0; i < length; i++) {
+            putFloat(address + (long) i * 4, array[offset + i]);
+        }
+    }
+
+    /**
+     * Copies {@code length} values of type {@code double} from native memory to an array.
+     *
+     * @param address the address of the first value to read
+     * @param array   the destination array
+     * @param offset  the index of the first value to write in the array
+     * @param length  the number of values to copy
+     * @throws IndexOutOfBoundsException when the range is out of the bounds of the array
+     */
+    default void getDoubleArray(@Pointer long address, double[] array, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, array.length);
+        for (int i = 0; i < length; i++) {
+            array[offset + i] = getDouble(address + (long) i * 8);
+        }
+    }
+
+    /**
+     * Copies {@code length} values of type {@code double} from an array to native memory.
+     *
+     * @param address the address of the first value to write
+     * @param array   the source array
+     * @param offset  the index of the first value to read in the array
+     * @param length  the number of values to copy
+     * @throws IndexOutOfBoundsException when the range is out of the bounds of the array
+     */
+    default void putDoubleArray(@Pointer long address, double[] array, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, array.length);
+        for (int i = 0; i < length; i++) {
+            putDouble(address + (long) i * 8, array[offset + i]);
+        }
+    }
+
+    /**
+     * Sets {@code bytes} bytes of native memory to the given value, like {@code memset} does.
+     *
+     * @param address the address of the memory to set
+     * @param bytes   the number of bytes to set
+     * @param value   the value of the bytes
+     */
+    default void setMemory(@Pointer long address, long bytes, byte value) {
+        for (long i = 0; i < bytes; i++) {
+            putByte(address + i, value);
+        }
+    }
+
+    /**
+     * Sets {@code count} consecutive values of type {@code short} to the given value.
+     *
+     * @param address the address of the first value
+     * @param count   the number of values to set
+     * @param value   the value to set
+     */
+    default void fillShort(@Pointer long address, long count, short value) {
+        for (long i = 0; i < count; i++) {
+            putShort(address + i * 2, value);
+        }
+    }
+
+    /**
+     * Sets {@code count} consecutive values of type {@code int} to the given value.
+     *
+     * @param address the address of the first value
+     * @param count   the number of values to set
+     * @param value   the value to set
+     */
+    default void fillInt(@Pointer long address, long count, int value) {
+        for (long i = 0; i < count; i++) {
+            putInt(address + i * 4, value);
+        }
+    }
+
+    /**
+     * Sets {@code count} consecutive values of type {@code long} to the given value.
+     *
+     * @param address the address of the first value
+     * @param count   the number of values to set
+     * @param value   the value to set
+     */
+    default void fillLong(@Pointer long address, long count, long value) {
+        for (long i = 0; i < count; i++) {
+            putLong(address + i * 8, value);
+        }
+    }
+
+    /**
+     * Sets {@code count} consecutive values of type {@code float} to the given value.
+     *
+     * @param address the address of the first value
+     * @param count   the number of values to set
+     * @param value   the value to set
+     */
+    default void fillFloat(@Pointer long address, long count, float value) {
+        for (long i = 0; i < count; i++) {
+            putFloat(address + i * 4, value);
+        }
+    }
+
+    /**
+     * Sets {@code count} consecutive values of type {@code double} to the given value.
+     *
+     * @param address the address of the first value
+     * @param count   the number of values to set
+     * @param value   the value to set
+     */
+    default void fillDouble(@Pointer long address, long count, double value) {
+        for (long i = 0; i < count; i++) {
+            putDouble(address + i * 8, value);
+        }
+    }
+
+    /**
+     * Checks whether this accessor implements the atomic operations, {@link #compareAndSetInt(long, int, int)},
+     * {@link #compareAndSetLong(long, long, long)} and {@link #getAndAddLong(long, long)}, which otherwise throw
+     * an {@link UnsupportedOperationException}. Accessors supporting them also read and write {@code long} values
+     * atomically in the volatile and ordered methods.
+     *
+     * @return {@code true} if atomic operations are supported
+     */
+    default boolean canAccessAtomically() {
+        return false;
+    }
+
+    /**
+     * Reads an {@code int} with volatile semantics: no read or write done afterwards can be reordered before it.
+     *
+     * @param address the address of the value, which must be aligned to 4 bytes
+     * @return the value
+     */
+    default int getIntVolatile(@Pointer long address) {
+        int value = getInt(address);
+        VarHandle.fullFence();
+        return value;
+    }
+
+    /**
+     * Writes an {@code int} with volatile semantics: no read or write can be reordered around it.
+     *
+     * @param address the address of the value, which must be aligned to 4 bytes
+     * @param x       the value to write
+     */
+    default void putIntVolatile(@Pointer long address, int x) {
+        VarHandle.fullFence();
+        putInt(address, x);
+        VarHandle.fullFence();
+    }
+
+    /**
+     * Writes an {@code int} with release semantics: no read or write done before it can be reordered after it.
+     * This is cheaper than {@link #putIntVolatile(long, int)}, and enough to publish data written beforehand.
+     *
+     * @param address the address of the value, which must be aligned to 4 bytes
+     * @param x       the value to write
+     */
+    default void putIntOrdered(@Pointer long address, int x) {
+        VarHandle.releaseFence();
+        putInt(address, x);
+    }
+
+    /**
+     * Atomically replaces an {@code int} with {@code x} if it is equal to {@code expected}.
+     *
+     * @param address  the address of the value, which must be aligned to 4 bytes
+     * @param expected the expected value
+     * @param x        the new value
+     * @return {@code true} if the value has been replaced
+     * @throws UnsupportedOperationException when this accessor {@linkplain #canAccessAtomically() doesn't support}
+     *                                       atomic operations
+     */
+    default boolean compareAndSetInt(@Pointer long address, int expected, int x) {
+        throw new UnsupportedOperationException("This NativeMemoryAccessor doesn't support atomic operations.");
+    }
+
+    /**
+     * Reads a {@code long} with volatile semantics: no read or write done afterwards can be reordered before it.
+     * <p>
+     * By default, this is a plain read followed by a fence, which may be torn on 32-bit platforms: only
+     * accessors which {@linkplain #canAccessAtomically() can access memory atomically} are guaranteed to read
+     * the value in one go.
+     *
+     * @param address the address of the value, which must be aligned to 8 bytes
+     * @return the value
+     */
+    default long getLongVolatile(@Pointer long address) {
+        long value = getLong(address);
+        VarHandle.fullFence();
+        return value;
+    }
+
+    /**
+     * Writes a {@code long} with volatile semantics: no read or write can be reordered around it.
+     * Like {@link #getLongVolatile(long)}, the default implementation may be torn on 32-bit platforms.
+     *
+     * @param address the address of the value, which must be aligned to 8 bytes
+     * @param x       the value to write
+     */
+    default void putLongVolatile(@Pointer long address, long x) {
+        VarHandle.fullFence();
+        putLong(address, x);
+        VarHandle.fullFence();
+    }
+
+    /**
+     * Writes a {@code long} with release semantics: no read or write done before it can be reordered after it.
+     * This is cheaper than {@link #putLongVolatile(long, long)}, and enough to publish data written beforehand.
+     *
+     * @param address the address of the value, which must be aligned to 8 bytes
+     * @param x       the value to write
+     */
+    default void putLongOrdered(@Pointer long address, long x) {
+        VarHandle.releaseFence();
+        putLong(address, x);
+    }
+
+    /**
+     * Atomically replaces a {@code long} with {@code x} if it is equal to {@code expected}.
+     *
+     * @param address  the address of the value, which must be aligned to 8 bytes
+     * @param expected the expected value
+     * @param x        the new value
+     * @return {@code true} if the value has been replaced
+     * @throws UnsupportedOperationException when this accessor {@linkplain #canAccessAtomically() doesn't support}
+     *                                       atomic operations
+     */
+    default boolean compareAndSetLong(@Pointer long address, long expected, long x) {
+        throw new UnsupportedOperationException("This NativeMemoryAccessor doesn't support atomic operations.");
+    }
+
+    /**
+     * Atomically adds {@code delta} to a {@code long}.
+     *
+     * @param address the address of the value, which must be aligned to 8 bytes
+     * @param delta   the value to add
+     * @return the previous value
+     * @throws UnsupportedOperationException when this accessor {@linkplain #canAccessAtomically() doesn't support}
+     *                                       atomic operations
+     */
+    default long getAndAddLong(@Pointer long address, long delta) {
+        long value;
+        do {
+            value = getLongVolatile(address);
+        } while (!compareAndSetLong(address, value, value + delta));
+        return value;
+    }
+
+    /**
+     * Checks whether this accessor implements {@link #getDirectBufferAddress(Buffer)}, which is otherwise
+     * done through JNI.
+     *
+     * @return {@code true} if direct buffers are supported
+     */
+    default boolean canAccessDirectBuffers() {
+        return false;
+    }
+
+    /**
+     * Gets the address of the memory of a direct buffer.
+     *
+     * @param buffer the direct buffer
+     * @return the address of the first element of the buffer
+     * @throws UnsupportedOperationException when this accessor doesn't support direct buffers
+     */
+    default @Pointer long getDirectBufferAddress(Buffer buffer) {
+        throw new UnsupportedOperationException("This NativeMemoryAccessor doesn't support direct buffers.");
+    }
+
+    /**
+     * Releases the memory of a direct buffer allocated by Java, such as a mapped file region, without waiting
+     * for the buffer to be garbage collected. The buffer, and every buffer sharing its memory, must not be
+     * used afterwards.
+     * <p>
+     * By default, this does nothing, and the memory is released once the buffer is garbage collected.
+     *
+     * @param buffer the direct buffer, which must not be a slice or a duplicate of another buffer
+     */
+    default void freeDirectBuffer(ByteBuffer buffer) {
+    }
+
     @Pointer long allocateMemory(long bytes);
 
     void freeMemory(@Pointer long address);
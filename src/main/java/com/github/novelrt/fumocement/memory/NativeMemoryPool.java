@@ -0,0 +1,287 @@
+// Copyright © Matt Jones and Contributors. Licensed under the MIT License (MIT). See LICENCE.md in the repository root for more information.
+
+package com.github.novelrt.fumocement.memory;
+
+import com.github.novelrt.fumocement.HandleDeleter;
+import com.github.novelrt.fumocement.Pointer;
+
+import java.util.Arrays;
+
+/**
+ * A pool of native memory blocks sorted by size classes, meant to avoid going through the
+ * system allocator for small and short-lived allocations, such as builtin pointers or small structs.
+ * <p>
+ * Allocations up to {@link #MAX_POOLED_SIZE} bytes are rounded up to the next power of two
+ * (with a minimum of 8 bytes), and are taken from slabs of memory allocated using the
+ * {@link NativeMemoryAccessor}. Larger allocations go straight to the {@link NativeMemoryAccessor}.
+ * <p>
+ * Each thread has its own cache of free blocks per size class, so most allocations and releases
+ * don't require any synchronization. When a thread cache is empty or full, blocks are moved
+ * in bulk from or to the pool.
+ * <p>
+ * Blocks must be freed using {@link #free(long, long)}, with the same size that was used to allocate them.
+ * The memory of the slabs is only given back to the system when the pool is closed.
+ * <p>
+ * <b>Example:</b>
+ * <pre>{@code public class Example extends NativeObject {
+ *   private static final long SIZE = 16;
+ *
+ *   public Example() {
+ *     super(NativeMemory.pool().allocate(SIZE), true, NativeMemory.pool().deleterFor(SIZE));
+ *   }
+ * }
+ * }</pre>
+ */
+public final class NativeMemoryPool implements AutoCloseable {
+    /**
+     * The maximum size of an allocation handled by the size classes of a pool.
+     */
+    public static final long MAX_POOLED_SIZE = 1024;
+    /**
+     * The default size of the slabs, which can be changed with the
+     * {@code novelrt.fumocement.pool.slabSize} system property.
+     */
+    public static final long DEFAULT_SLAB_SIZE;
+
+    private static final int MIN_SIZE_SHIFT = 3; // 8 bytes
+    private static final int SIZE_CLASS_COUNT = 8; // 8 to 1024 bytes
+    private static final int DEFAULT_BATCH_SIZE = 32;
+
+    static {
+        String slabSize = System.getProperty("novelrt.fumocement.pool.slabSize");
+        if (slabSize != null) {
+            DEFAULT_SLAB_SIZE = validateSlabSize(Long.parseLong(slabSize));
+        } else {
+            DEFAULT_SLAB_SIZE = 64 * 1024;
+        }
+    }
+
+    private final NativeMemoryAccessor accessor;
+    private final long slabSize;
+    private final int batchSize;
+    private final SizeClass[] sizeClasses = new SizeClass[SIZE_CLASS_COUNT];
+    private final HandleDeleter[] deleters = new HandleDeleter[SIZE_CLASS_COUNT];
+    private final ThreadLocal<ThreadCache> threadCaches = ThreadLocal.withInitial(ThreadCache::new);
+    private final HandleDeleter largeDeleter;
+    // Checked on every call, as the thread caches may still hold blocks of freed slabs.
+    private volatile boolean closed;
+
+    /**
+     * Creates a new pool with the default slab size, using the default {@link NativeMemoryAccessor}.
+     */
+    public NativeMemoryPool() {
+        this(NativeMemory.access(), DEFAULT_SLAB_SIZE, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Creates a new pool using the given {@link NativeMemoryAccessor} to allocate its slabs.
+     *
+     * @param accessor  the accessor used to allocate slabs and large blocks
+     * @param slabSize  the size of a slab, which must be at least {@link #MAX_POOLED_SIZE} bytes
+     * @param batchSize how many blocks are moved at once between a thread cache and the pool
+     * @throws IllegalArgumentException when the slab size or the batch size is invalid
+     */
+    public NativeMemoryPool(NativeMemoryAccessor accessor, long slabSize, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+        }
+        this.accessor = accessor;
+        this.slabSize = validateSlabSize(slabSize);
+        this.batchSize = batchSize;
+        for (int i = 0; i < SIZE_CLASS_COUNT; i++) {
+            long blockSize = 1L << (i + MIN_SIZE_SHIFT);
+            sizeClasses[i] = new SizeClass(blockSize);
+            deleters[i] = address -> free(address, blockSize);
+        }
+        largeDeleter = accessor::freeMemory;
+    }
+
+    private static long validateSlabSize(long slabSize) {
+        if (slabSize < MAX_POOLED_SIZE) {
+            throw new IllegalArgumentException("Invalid slab size: " + slabSize);
+        }
+        return slabSize;
+    }
+
+    /**
+     * Allocates a block of at least {@code size} bytes. The memory is not initialized.
+     *
+     * @param size the size of the block
+     * @return the address of the block
+     * @throws IllegalArgumentException when the size is negative
+     * @throws IllegalStateException    when the pool has been closed
+     */
+    public @Pointer long allocate(long size) {
+        if (closed) {
+            throw new IllegalStateException("Cannot allocate memory from a closed pool.");
+        }
+        if (size > MAX_POOLED_SIZE) {
+            return accessor.allocateMemory(size);
+        }
+
+        int sizeClass = sizeClassOf(size);
+        ThreadCache cache = threadCaches.get();
+        int count = cache.counts[sizeClass];
+        if (count == 0) {
+            count = sizeClasses[sizeClass].refill(cache.blocks[sizeClass], batchSize);
+        }
+        cache.counts[sizeClass] = --count;
+        return cache.blocks[sizeClass][count];
+    }
+
+    /**
+     * Frees a block allocated with {@link #allocate(long)}.
+     * Once the pool is closed, this only frees blocks larger than {@link #MAX_POOLED_SIZE},
+     * as the other blocks have been freed along with their slab.
+     *
+     * @param address the address of the block
+     * @param size    the size used to allocate the block
+     */
+    public void free(@Pointer long address, long size) {
+        if (size > MAX_POOLED_SIZE) {
+            accessor.freeMemory(address);
+            return;
+        }
+        if (closed) {
+            return;
+        }
+
+        int sizeClass = sizeClassOf(size);
+        ThreadCache cache = threadCaches.get();
+        long[] blocks = cache.blocks[sizeClass];
+        int count = cache.counts[sizeClass];
+        if (count == blocks.length) {
+            // Give back the oldest half of the cache, the most recent blocks are more likely to be in the CPU cache.
+            sizeClasses[sizeClass].release(blocks, 0, batchSize);
+            System.arraycopy(blocks, batchSize, blocks, 0, count - batchSize);
+            count -= batchSize;
+        }
+        blocks[count] = address;
+        cache.counts[sizeClass] = count + 1;
+    }
+
+    /**
+     * Gets a {@link HandleDeleter} freeing blocks of the given size, which can be used to create
+     * {@link com.github.novelrt.fumocement.NativeObject}s with handles allocated from this pool.
+     * <p>
+     * The deleters are cached, so this method does not allocate.
+     *
+     * @param size the size used to allocate the blocks
+     * @return a {@link HandleDeleter} freeing blocks of the given size
+     */
+    public HandleDeleter deleterFor(long size) {
+        if (size > MAX_POOLED_SIZE) {
+            return largeDeleter;
+        }
+        return deleters[sizeClassOf(size)];
+    }
+
+    /**
+     * Gives back all the blocks cached by the current thread to the pool.
+     * <p>
+     * This should be called by threads that stop using the pool before terminating,
+     * otherwise their cached blocks won't be reused until the pool is closed.
+     */
+    public void flushThreadCache() {
+        ThreadCache cache = threadCaches.get();
+        for (int i = 0; i < SIZE_CLASS_COUNT; i++) {
+            sizeClasses[i].release(cache.blocks[i], 0, cache.counts[i]);
+            cache.counts[i] = 0;
+        }
+        threadCaches.remove();
+    }
+
+    /**
+     * Frees all the slabs of this pool. All the blocks allocated from the pool become invalid,
+     * and the pool must not be used by any thread anymore.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (SizeClass sizeClass : sizeClasses) {
+            sizeClass.close();
+        }
+        threadCaches.remove();
+    }
+
+    private static int sizeClassOf(long size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Invalid allocation size: " + size);
+        }
+        if (size <= 1L << MIN_SIZE_SHIFT) {
+            return 0;
+        }
+        return 64 - Long.numberOfLeadingZeros(size - 1) - MIN_SIZE_SHIFT;
+    }
+
+    private final class ThreadCache {
+        final long[][] blocks = new long[SIZE_CLASS_COUNT][batchSize * 2];
+        final int[] counts = new int[SIZE_CLASS_COUNT];
+    }
+
+    private final class SizeClass {
+        private final long blockSize;
+        // Guarded by this.
+        private long[] freeBlocks = new long[64];
+        private int freeCount;
+        private long[] slabs = new long[4];
+        private int slabCount;
+        private boolean closed;
+
+        SizeClass(long blockSize) {
+            this.blockSize = blockSize;
+        }
+
+        synchronized int refill(long[] destination, int count) {
+            if (closed) {
+                throw new IllegalStateException("Cannot allocate memory from a closed pool.");
+            }
+            if (freeCount == 0) {
+                carveSlab();
+            }
+            int moved = Math.min(count, freeCount);
+            freeCount -= moved;
+            System.arraycopy(freeBlocks, freeCount, destination, 0, moved);
+            return moved;
+        }
+
+        synchronized void release(long[] source, int offset, int count) {
+            if (closed) {
+                return;
+            }
+            ensureFreeCapacity(freeCount + count);
+            System.arraycopy(source, offset, freeBlocks, freeCount, count);
+            freeCount += count;
+        }
+
+        synchronized void close() {
+            for (int i = 0; i < slabCount; i++) {
+                accessor.freeMemory(slabs[i]);
+            }
+            slabCount = 0;
+            freeCount = 0;
+            closed = true;
+        }
+
+        private void carveSlab() {
+            long slab = accessor.allocateMemory(slabSize);
+            if (slabCount == slabs.length) {
+                slabs = Arrays.copyOf(slabs, slabs.length * 2);
+            }
+            slabs[slabCount++] = slab;
+
+            int blockCount = (int) (slabSize / blockSize);
+            ensureFreeCapacity(freeCount + blockCount);
+            // Push the blocks in reverse order, so they are handed out in address order.
+            for (int i = blockCount - 1; i >= 0; i--) {
+                freeBlocks[freeCount++] = slab + i * blockSize;
+            }
+        }
+
+        private void ensureFreeCapacity(int capacity) {
+            if (capacity > freeBlocks.length) {
+                freeBlocks = Arrays.copyOf(freeBlocks, Math.max(capacity, freeBlocks.length * 2));
+            }
+        }
+    }
+}
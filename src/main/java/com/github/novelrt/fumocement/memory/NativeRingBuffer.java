@@ -0,0 +1,345 @@
+// Copyright © Matt Jones and Contributors. Licensed under the MIT License (MIT). See LICENCE.md in the repository root for more information.
+
+package com.github.novelrt.fumocement.memory;
+
+import com.github.novelrt.fumocement.DisposalMethod;
+import com.github.novelrt.fumocement.NativeObject;
+import com.github.novelrt.fumocement.Pointer;
+
+import java.util.function.LongConsumer;
+
+/**
+ * A bounded lock-free queue of fixed-size messages in native memory, shared by Java and native code.
+ * <p>
+ * The buffer has the same layout as {@code FumoCement::RingBuffer}, so each side can be either
+ * the producer or the consumer, and messages go through without any JNI call. There is always a single consumer,
+ * and either a single producer ({@link ProducerMode#SINGLE}) or many producers ({@link ProducerMode#MULTIPLE}),
+ * which claim messages using a compare-and-set.
+ * <p>
+ * Each slot of the buffer starts with a sequence number telling whether it is free for the producer at a given
+ * position, or ready for the consumer. A message is written in two steps: {@link #tryClaim()} reserves a slot
+ * and gives the address of its message, and {@link #commit(long)} publishes it. Likewise, the consumer reads
+ * the message given by {@link #peek()}, then gives its slot back with {@link #release()}.
+ * <p>
+ * <b>Example:</b>
+ * <pre>{@code NativeRingBuffer commands = new NativeRingBuffer(1024, COMMAND_SIZE, NativeRingBuffer.ProducerMode.SINGLE);
+ * startRenderThread(commands.getHandle());
+ * long command = commands.tryClaim();
+ * if (command != 0) {
+ *   ACCESSOR.putInt(command, DRAW_SPRITE);
+ *   // ...
+ *   commands.commit(command);
+ * }
+ * }</pre>
+ * Claiming messages is thread-safe when the producer mode is {@link ProducerMode#MULTIPLE}, but consuming
+ * them must only be done by one thread at a time.
+ * <p>
+ * Multi-producer buffers need a {@link NativeMemoryAccessor} which
+ * {@linkplain NativeMemoryAccessor#canAccessAtomically() can access memory atomically}.
+ */
+public final class NativeRingBuffer extends NativeObject {
+    // The layout of FumoCement::RingBuffer. Counters are on separate cache lines.
+    static final long HEAD_OFFSET = 0;
+    static final long TAIL_OFFSET = 64;
+    static final long DROPPED_OFFSET = 128;
+    static final long CAPACITY_OFFSET = 192;
+    static final long SLOT_SIZE_OFFSET = 200;
+    static final long PRODUCER_MODE_OFFSET = 208;
+    static final long HEADER_SIZE = 256;
+    // Each slot starts with its sequence number, followed by the message.
+    static final long SEQUENCE_SIZE = 8;
+
+    private static final NativeMemoryAccessor ACCESSOR = NativeMemory.access();
+
+    private final int capacity;
+    private final long messageSize;
+    private final long slotSize;
+    private final ProducerMode producerMode;
+
+    /**
+     * Creates a new ring buffer, whose native memory is freed once garbage collected.
+     *
+     * @param capacity     the number of messages the buffer can hold, which must be a power of two
+     * @param messageSize  the size of a message
+     * @param producerMode whether there can be multiple producers
+     * @throws IllegalArgumentException      when the capacity or the message size is invalid
+     * @throws UnsupportedOperationException when there can be multiple producers, but atomic operations
+     *                                       aren't supported
+     */
+    public NativeRingBuffer(int capacity, long messageSize, ProducerMode producerMode) {
+        this(capacity, messageSize, producerMode, DisposalMethod.GARBAGE_COLLECTED);
+    }
+
+    /**
+     * Creates a new ring buffer with the given {@link DisposalMethod}.
+     *
+     * @param capacity       the number of messages the buffer can hold, which must be a power of two
+     * @param messageSize    the size of a message
+     * @param producerMode   whether there can be multiple producers
+     * @param disposalMethod the disposal method to use
+     * @throws IllegalArgumentException      when the capacity or the message size is invalid
+     * @throws UnsupportedOperationException when there can be multiple producers, but atomic operations
+     *                                       aren't supported
+     */
+    public NativeRingBuffer(int capacity, long messageSize, ProducerMode producerMode, DisposalMethod disposalMethod) {
+        super(allocate(capacity, messageSize, checkAtomics(producerMode)), true, disposalMethod,
+                NativeMemory.freeMemoryDeleter());
+        this.capacity = capacity;
+        this.messageSize = messageSize;
+        this.slotSize = slotSizeOf(messageSize);
+        this.producerMode = producerMode;
+    }
+
+    /**
+     * Creates a view of an existing ring buffer, which has been {@linkplain #initialize initialized}.
+     *
+     * @param address the address of the ring buffer
+     * @throws UnsupportedOperationException when there can be multiple producers, but atomic operations
+     *                                       aren't supported
+     */
+    public NativeRingBuffer(@Pointer("FumoCement::RingBuffer*") long address) {
+        super(address, false, null);
+        this.capacity = (int) ACCESSOR.getLong(address + CAPACITY_OFFSET);
+        this.slotSize = ACCESSOR.getLong(address + SLOT_SIZE_OFFSET);
+        this.messageSize = slotSize - SEQUENCE_SIZE;
+        this.producerMode = checkAtomics(
+                ACCESSOR.getInt(address + PRODUCER_MODE_OFFSET) == ProducerMode.MULTIPLE.value ?
+                        ProducerMode.MULTIPLE : ProducerMode.SINGLE);
+    }
+
+    private static ProducerMode checkAtomics(ProducerMode producerMode) {
+        if (producerMode == ProducerMode.MULTIPLE && !ACCESSOR.canAccessAtomically()) {
+            throw new UnsupportedOperationException(
+                    "Cannot use a multi-producer ring buffer without atomic operations, which the " +
+                    ACCESSOR.getClass().getSimpleName() + " doesn't support.");
+        }
+        return producerMode;
+    }
+
+    private static long allocate(int capacity, long messageSize, ProducerMode producerMode) {
+        long address = ACCESSOR.allocateMemory(sizeOf(capacity, messageSize));
+        initialize(address, capacity, messageSize, producerMode);
+        return address;
+    }
+
+    private static long slotSizeOf(long messageSize) {
+        // Keep the sequence numbers aligned.
+        return (SEQUENCE_SIZE + messageSize + 7) & -8L;
+    }
+
+    /**
+     * Gets the number of bytes needed by a ring buffer.
+     *
+     * @param capacity    the number of messages the buffer can hold, which must be a power of two
+     * @param messageSize the size of a message
+     * @return the size of the ring buffer, in bytes
+     * @throws IllegalArgumentException when the capacity or the message size is invalid
+     */
+    public static long sizeOf(int capacity, long messageSize) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Invalid ring buffer capacity: " + capacity);
+        }
+        if (messageSize < 0) {
+            throw new IllegalArgumentException("Invalid message size: " + messageSize);
+        }
+        return HEADER_SIZE + capacity * slotSizeOf(messageSize);
+    }
+
+    /**
+     * Initializes an empty ring buffer in the given memory, which must be aligned to 8 bytes and hold
+     * {@link #sizeOf(int, long)} bytes. Everything written is visible to other threads once this method returns.
+     *
+     * @param address      the address of the ring buffer
+     * @param capacity     the number of messages the buffer can hold, which must be a power of two
+     * @param messageSize  the size of a message
+     * @param producerMode whether there can be multiple producers
+     * @throws IllegalArgumentException when the capacity or the message size is invalid
+     */
+    public static void initialize(@Pointer("FumoCement::RingBuffer*") long address,
+                                  int capacity,
+                                  long messageSize,
+                                  ProducerMode producerMode) {
+        sizeOf(capacity, messageSize);
+        long slotSize = slotSizeOf(messageSize);
+        ACCESSOR.zeroMemory(address, HEADER_SIZE);
+        ACCESSOR.putLong(address + CAPACITY_OFFSET, capacity);
+        ACCESSOR.putLong(address + SLOT_SIZE_OFFSET, slotSize);
+        ACCESSOR.putInt(address + PRODUCER_MODE_OFFSET, producerMode.value);
+        for (long i = 0; i < capacity; i++) {
+            ACCESSOR.putLong(address + HEADER_SIZE + i * slotSize, i);
+        }
+        ACCESSOR.putLongVolatile(address + HEAD_OFFSET, 0);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getMessageSize() {
+        return messageSize;
+    }
+
+    public ProducerMode getProducerMode() {
+        return producerMode;
+    }
+
+    /**
+     * Gets the number of times a message couldn't be claimed because the buffer was full.
+     *
+     * @return the number of failed claims
+     */
+    public long getDroppedCount() {
+        return ACCESSOR.getLongVolatile(getHandle() + DROPPED_OFFSET);
+    }
+
+    /**
+     * Gets an estimate of the number of messages claimed but not released yet.
+     *
+     * @return the number of messages in the buffer
+     */
+    public int getPendingCount() {
+        long handle = getHandle();
+        long tail = ACCESSOR.getLongVolatile(handle + TAIL_OFFSET);
+        long head = ACCESSOR.getLongVolatile(handle + HEAD_OFFSET);
+        return (int) Math.max(0, Math.min(capacity, head - tail));
+    }
+
+    /**
+     * Reserves a message, which must be published with {@link #commit(long)} once written.
+     *
+     * @return the address of the message, or {@code 0} if the buffer is full
+     */
+    public @Pointer long tryClaim() {
+        long handle = getHandle();
+        long head = ACCESSOR.getLongVolatile(handle + HEAD_OFFSET);
+        while (true) {
+            long slot = slotAt(handle, head);
+            long difference = ACCESSOR.getLongVolatile(slot) - head;
+            if (difference == 0) {
+                if (producerMode == ProducerMode.SINGLE) {
+                    ACCESSOR.putLongOrdered(handle + HEAD_OFFSET, head + 1);
+                    return slot + SEQUENCE_SIZE;
+                }
+                if (ACCESSOR.compareAndSetLong(handle + HEAD_OFFSET, head, head + 1)) {
+                    return slot + SEQUENCE_SIZE;
+                }
+                head = ACCESSOR.getLongVolatile(handle + HEAD_OFFSET);
+            } else if (difference < 0) {
+                // The consumer hasn't released this slot yet.
+                if (producerMode == ProducerMode.SINGLE) {
+                    // Only this producer writes the counter, so it doesn't need to be atomic.
+                    long dropped = ACCESSOR.getLong(handle + DROPPED_OFFSET);
+                    ACCESSOR.putLongOrdered(handle + DROPPED_OFFSET, dropped + 1);
+                } else {
+                    ACCESSOR.getAndAddLong(handle + DROPPED_OFFSET, 1);
+                }
+                return 0;
+            } else {
+                // Another producer has claimed this position.
+                head = ACCESSOR.getLongVolatile(handle + HEAD_OFFSET);
+            }
+        }
+    }
+
+    /**
+     * Publishes a message obtained with {@link #tryClaim()}, making it visible to the consumer.
+     *
+     * @param message the address of the message
+     */
+    public void commit(@Pointer long message) {
+        long slot = message - SEQUENCE_SIZE;
+        // The sequence number of a claimed slot is still its position.
+        ACCESSOR.putLongOrdered(slot, ACCESSOR.getLong(slot) + 1);
+    }
+
+    /**
+     * Copies a message into the buffer.
+     *
+     * @param source the address of the message to copy
+     * @param size   the size of the message, which must not be larger than the message size of the buffer
+     * @return {@code true} if the message has been queued, {@code false} if the buffer is full
+     * @throws IllegalArgumentException when the message is too large
+     */
+    public boolean offer(@Pointer long source, long size) {
+        if (size < 0 || size > messageSize) {
+            throw new IllegalArgumentException("Invalid message size: " + size);
+        }
+        long message = tryClaim();
+        if (message == 0) {
+            return false;
+        }
+        ACCESSOR.copyMemory(source, message, size);
+        commit(message);
+        return true;
+    }
+
+    /**
+     * Gets the next message, without removing it from the buffer.
+     *
+     * @return the address of the message, or {@code 0} if there is no message ready
+     */
+    public @Pointer long peek() {
+        long handle = getHandle();
+        long tail = ACCESSOR.getLongVolatile(handle + TAIL_OFFSET);
+        long slot = slotAt(handle, tail);
+        return ACCESSOR.getLongVolatile(slot) == tail + 1 ? slot + SEQUENCE_SIZE : 0;
+    }
+
+    /**
+     * Removes the message given by {@link #peek()}, so its slot can be used again by the producers.
+     */
+    public void release() {
+        long handle = getHandle();
+        long tail = ACCESSOR.getLongVolatile(handle + TAIL_OFFSET);
+        ACCESSOR.putLongOrdered(slotAt(handle, tail), tail + capacity);
+        ACCESSOR.putLongOrdered(handle + TAIL_OFFSET, tail + 1);
+    }
+
+    /**
+     * Gives up to {@code maxMessages} messages to the handler, in order, and removes them from the buffer.
+     * If the handler throws an exception, the message is still removed.
+     *
+     * @param handler     the handler, called with the address of each message, which is only valid during the call
+     * @param maxMessages the maximum number of messages to handle
+     * @return the number of handled messages
+     */
+    public int drain(LongConsumer handler, int maxMessages) {
+        int count = 0;
+        while (count < maxMessages) {
+            long message = peek();
+            if (message == 0) {
+                break;
+            }
+            try {
+                handler.accept(message);
+            } finally {
+                release();
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private long slotAt(long handle, long position) {
+        return handle + HEADER_SIZE + (position & (capacity - 1)) * slotSize;
+    }
+
+    @Override
+    public @Pointer("FumoCement::RingBuffer*") long getHandle() {
+        return super.getHandle();
+    }
+
+    /**
+     * Whether a ring buffer can be written by one or many threads at the same time.
+     */
+    public enum ProducerMode {
+        SINGLE(0),
+        MULTIPLE(1);
+
+        private final int value;
+
+        ProducerMode(int value) {
+            this.value = value;
+        }
+    }
+}
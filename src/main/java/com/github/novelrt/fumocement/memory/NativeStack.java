@@ -2,8 +2,14 @@
 
 package com.github.novelrt.fumocement.memory;
 
+import com.github.novelrt.fumocement.HandleDeleter;
 import com.github.novelrt.fumocement.NativeObject;
 import com.github.novelrt.fumocement.NativeOpsEnhancedThread;
+import com.github.novelrt.fumocement.Pointer;
+import com.github.novelrt.fumocement.Pointers;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
 
 /**
  * A First-In-Last-Out (FILO) buffer using native memory,
@@ -15,9 +21,36 @@ import com.github.novelrt.fumocement.NativeOpsEnhancedThread;
  * <p>
  * The default size of a stack is, by default, of 64 KB per thread. This can be changed
  * with the {@code novelrt.fumocement.stack.size} system property.
+ * <p>
+ * When an allocation doesn't fit, the stack grows by chaining another chunk of native memory,
+ * which is released once the stack unwinds below it. The most recently released chunk is kept
+ * for the next time the stack grows. Once the stack is empty, its base chunk is enlarged to fit
+ * the most memory it ever had to hold, up to four times its initial size, so the chunks are only needed
+ * for the first few large calls. The larger chunks needed by rare, very large calls are released
+ * once the stack is empty, so they don't stay allocated by every thread that made such a call.
+ * A stack can't hold more than 64 MB, which can be changed with the
+ * {@code novelrt.fumocement.stack.maxSize} system property: going past this limit throws an
+ * {@link IllegalStateException}.
+ * <p>
+ * Memory can be freed using a {@link Scope}, a {@link Resource}, or, in code where allocating these
+ * objects is too costly, by restoring a {@linkplain #mark() mark}.
+ * <p>
+ * <b>Example:</b>
+ * <pre>{@code NativeStack stack = NativeStack.current();
+ * long mark = stack.mark();
+ * try {
+ *   long width = Int32Pointer.allocateManual(stack);
+ *   long height = Int32Pointer.allocateManual(stack);
+ *   getWindowSize(window, width, height);
+ *   return new Size(Int32Pointer.read(width), Int32Pointer.read(height));
+ * } finally {
+ *   stack.restore(mark);
+ * }
+ * }</pre>
  */
 public class NativeStack extends NativeObject {
     public static final long DEFAULT_SIZE;
+    public static final long MAX_SIZE;
 
     static {
         String stackSize = System.getProperty("novelrt.fumocement.stack.size");
@@ -26,6 +59,13 @@ public class NativeStack extends NativeObject {
         } else {
             DEFAULT_SIZE = 64 * 1024;
         }
+
+        String maxStackSize = System.getProperty("novelrt.fumocement.stack.maxSize");
+        if (maxStackSize != null) {
+            MAX_SIZE = validateSize(Long.parseLong(maxStackSize));
+        } else {
+            MAX_SIZE = 64 * 1024 * 1024;
+        }
     }
 
     private static final ThreadLocal<NativeStack> currentTL = ThreadLocal.withInitial(NativeStack::new);
@@ -41,10 +81,25 @@ public class NativeStack extends NativeObject {
         }
     }
 
+    /**
+     * Attaches a stack to the current thread, which is then found faster by {@link #current()}.
+     *
+     * @see #optimizeThread(Thread)
+     */
     public static void optimizeCurrentThread() {
         optimizeThread(Thread.currentThread());
     }
 
+    /**
+     * Attaches a stack to the given thread, which is then found faster by {@link #current()}.
+     * <p>
+     * The stack is stored as the {@link Thread.UncaughtExceptionHandler} of the thread, wrapping the previous
+     * handler, and is kept until the thread terminates, or until its handler is replaced. This is meant for
+     * a few long-lived threads, such as the main thread or a render thread: tasks run by executors should
+     * use {@link #lease()} instead, so that the stacks aren't multiplied by the number of threads.
+     *
+     * @param thread the thread
+     */
     public static void optimizeThread(Thread thread) {
         Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
         if (handler instanceof WrappingUEH) {
@@ -60,6 +115,18 @@ public class NativeStack extends NativeObject {
         }
     }
 
+    /**
+     * Leases a stack from a shared {@link NativeStackPool}, which is given back when the lease is closed.
+     * <p>
+     * Unlike {@link #current()}, the stack isn't kept by the thread once the lease is closed, which makes
+     * it more suitable for tasks run by large thread pools.
+     *
+     * @return a lease of an empty stack
+     */
+    public static Lease lease() {
+        return SharedPool.INSTANCE.lease();
+    }
+
     private static long validateSize(long size) {
         if (size <= 0) {
             throw new IllegalArgumentException("Invalid stack size: " + size);
@@ -67,74 +134,210 @@ public class NativeStack extends NativeObject {
         return size;
     }
 
-    private long stackPointer;
-    private final long size;
-    private final long startingAddress;
+    // The base chunk grows up to this multiple of the initial size, larger calls always use chunks.
+    private static final long BASE_GROWTH_LIMIT = 4;
+
+    private final Chunks chunks;
+    private final long chunkSize;
+    private final long maxBaseSize;
+
+    // The stack is addressed using its depth, which is the number of bytes used from the top of the base chunk,
+    // as if all the chunks were contiguous. The current chunk covers the depths from its base depth to the limit.
+    private long depth;
+    private long limit;
+    // The address of the top of the current chunk, plus its base depth: subtracting a depth gives an address.
+    private long topBias;
+    // Freeing memory down to this depth (inclusive) requires going back to the previous chunk.
+    private long floor;
+    private long highWaterMark;
 
     public NativeStack() {
         this(DEFAULT_SIZE);
     }
 
     public NativeStack(long size) {
-        super(NativeMemory.access().allocateMemory(validateSize(size)), true, NativeMemory.access()::freeMemory);
-        // Imitate a stack going downwards
-        startingAddress = getHandle() + size;
-        stackPointer = startingAddress;
-        this.size = size;
+        this(new Chunks(validateSize(size)));
+    }
+
+    private NativeStack(Chunks chunks) {
+        super(chunks.current.address, true, chunks);
+        this.chunks = chunks;
+        this.chunkSize = chunks.current.size;
+        this.maxBaseSize = Math.max(chunkSize,
+                Math.min(chunkSize, MAX_SIZE / BASE_GROWTH_LIMIT) * BASE_GROWTH_LIMIT);
+        selectChunk(chunks.current);
     }
 
     public final Resource allocate(long size) {
-        stackPointer -= size;
-        checkOverflow(size);
-        return new Resource(stackPointer, size);
+        long mark = depth;
+        return new Resource(allocateManual(size), size, mark);
     }
 
     public final long allocateManual(long size) {
-        stackPointer -= size;
-        checkOverflow(size);
-        return stackPointer;
+        long newDepth = depth + size;
+        if (newDepth > limit) {
+            return allocateInNewChunk(size);
+        }
+        depth = newDepth;
+        return topBias - newDepth;
     }
 
     public final void freeManual(long size) {
-        stackPointer += size;
+        depth -= size;
+        if (depth <= floor) {
+            unwind();
+        }
+    }
+
+    /**
+     * Gets the current position of the stack, which can be given later to {@link #restore(long)}
+     * in order to free everything allocated in the meantime.
+     * <p>
+     * Unlike {@link #scope()}, this does not allocate anything on the Java heap.
+     * The mark is an opaque value, which is not an address.
+     *
+     * @return the current position of the stack
+     */
+    public final long mark() {
+        return depth;
+    }
+
+    /**
+     * Frees everything allocated since the given mark has been obtained using {@link #mark()}.
+     * <p>
+     * Marks must be restored in the reverse order they have been obtained. Once a mark has been restored,
+     * any mark obtained after it becomes invalid.
+     *
+     * @param mark a mark of this stack
+     */
+    public final void restore(long mark) {
+        assert mark >= 0 && mark <= depth :
+                "Cannot restore the stack to a position that has already been freed: " + mark;
+        depth = mark;
+        if (depth <= floor) {
+            unwind();
+        }
     }
 
     public final Scope scope() {
         return new Scope();
     }
 
+    /**
+     * Gets the size of the base chunk of this stack. This size can grow when the stack
+     * has needed more memory than that in the past.
+     *
+     * @return the size of the base chunk
+     */
     public final long getSize() {
-        return size;
+        return chunks.base().size;
     }
 
     public final long getStartingAddress() {
-        return startingAddress;
+        return chunks.base().top;
     }
 
-    private void checkOverflow(long allocSize) {
-        assert stackPointer >= getHandleUnsafe() :
-                "Stack overflow while allocating " + allocSize + " bytes. " +
-                "The stack size is " + getSize() + " bytes.\n" +
-                "There can be multiple reasons as to why this happened:\n" +
-                "   - You may have allocated too much memory in a very large stack scope.\n" +
-                "     Consider splitting your code into smaller scopes.\n\n" +
-                "   - You may have forgotten to free up memory using the allocate/free methods.\n\n" +
-                "   - The stack is simply too small for the amount of memory you're allocating.\n" +
-                "     Consider increasing the stack size using the novelrt.fumocement.stack.size system property.\n";
+    /**
+     * Gets how many bytes are currently allocated in this stack.
+     *
+     * @return the number of allocated bytes
+     */
+    public final long getUsedSize() {
+        return depth;
+    }
+
+    /**
+     * Gets the number of bytes that were needed when the stack last had to grow the most,
+     * or {@code 0} if it never had to grow.
+     * <p>
+     * The base chunk is enlarged to this size once the stack is empty, up to four times its initial size.
+     *
+     * @return the high-water mark of this stack
+     */
+    public final long getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    /**
+     * Gets the address of the base chunk of this stack, which can change when the base chunk grows.
+     *
+     * @return the address of the base chunk
+     */
+    @Override
+    protected @Pointer long getHandle() {
+        super.getHandle(); // Throws if the stack has been closed.
+        return chunks.base().address;
+    }
+
+    private long allocateInNewChunk(long size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Invalid allocation size: " + size);
+        }
+        // Don't let a leak use up all the memory.
+        if (depth + size > MAX_SIZE) {
+            throw new IllegalStateException(OverflowDiagnostics.describe("stack", size, MAX_SIZE,
+                    "You may have allocated too much memory in a very large stack scope.\n" +
+                    "Consider splitting your code into smaller scopes.",
+                    "You may have forgotten to free up memory using the allocate/free methods.",
+                    "The stack is simply too small for the amount of memory you're allocating.\n" +
+                    "Consider increasing the maximum stack size using the " +
+                    "novelrt.fumocement.stack.maxSize system property."));
+        }
+
+        highWaterMark = Math.max(highWaterMark, depth + size);
+        // The rest of the current chunk is skipped: the new chunk starts at the current depth.
+        selectChunk(chunks.push(Math.max(size, chunkSize), depth));
+        long newDepth = depth + size;
+        depth = newDepth;
+        return topBias - newDepth;
+    }
+
+    private void unwind() {
+        Chunk chunk = chunks.current;
+        while (chunk.previous != null && depth <= chunk.baseDepth) {
+            chunk = chunks.pop();
+        }
+        if (chunk.previous == null && depth == 0) {
+            // The stack is empty, so the base chunk can be replaced by one that fits everything.
+            long baseSize = targetBaseSize();
+            if (baseSize > chunk.size) {
+                chunk = chunks.replaceBase(baseSize);
+            }
+            chunks.releaseSpareLargerThan(maxBaseSize);
+        }
+        selectChunk(chunk);
+    }
+
+    private void selectChunk(Chunk chunk) {
+        limit = chunk.baseDepth + chunk.size;
+        topBias = chunk.top + chunk.baseDepth;
+        if (chunk.previous != null) {
+            floor = chunk.baseDepth;
+        } else if (targetBaseSize() > chunk.size || chunks.hasSpareLargerThan(maxBaseSize)) {
+            // Go back to the slow path once the stack is empty, to grow the base chunk or release a large chunk.
+            floor = 0;
+        } else {
+            floor = -1;
+        }
+    }
+
+    private long targetBaseSize() {
+        return Math.min(roundUpToPage(highWaterMark), maxBaseSize);
+    }
+
+    private static long roundUpToPage(long size) {
+        return (size + 4095) & -4096L;
     }
 
     public final class Scope implements AutoCloseable {
-        private long offset;
+        private final long mark;
 
         private Scope() {
+            mark = depth;
         }
 
         public long allocate(long size) {
-            stackPointer -= size;
-            offset += size;
-
-            checkOverflow(size);
-            return stackPointer;
+            return allocateManual(size);
         }
 
         public NativeStack getStack() {
@@ -143,22 +346,24 @@ public class NativeStack extends NativeObject {
 
         @Override
         public void close() {
-            stackPointer += offset;
+            restore(mark);
         }
     }
 
     public final class Resource implements AutoCloseable {
         private final long address;
         private final long size;
+        private final long mark;
 
-        private Resource(long address, long size) {
+        private Resource(long address, long size, long mark) {
             this.address = address;
             this.size = size;
+            this.mark = mark;
         }
 
         @Override
         public void close() {
-            stackPointer += size;
+            restore(mark);
         }
 
         public long address() {
@@ -168,6 +373,163 @@ public class NativeStack extends NativeObject {
         public long size() {
             return size;
         }
+
+        /**
+         * Gets a view of this resource as a {@link ByteBuffer}, using the native byte order.
+         * The buffer must not be used once the resource is closed.
+         *
+         * @return a view of the memory of this resource
+         * @throws UnsupportedOperationException when the resource is larger than 2 GB
+         */
+        public ByteBuffer asByteBuffer() {
+            if (size > Integer.MAX_VALUE) {
+                throw new UnsupportedOperationException("Cannot create a buffer of " + size + " bytes.");
+            }
+            return Pointers.asByteBuffer(address, (int) size);
+        }
+    }
+
+    /**
+     * A stack leased from a {@link NativeStackPool}, which must be closed to give the stack back.
+     * <p>
+     * Each lease is only valid once: after it has been closed, it can't be used to access the stack anymore,
+     * even if the stack has been leased again.
+     */
+    public static final class Lease implements AutoCloseable {
+        private final NativeStackPool pool;
+        private @Nullable NativeStack stack;
+
+        Lease(NativeStack stack, NativeStackPool pool) {
+            this.stack = stack;
+            this.pool = pool;
+        }
+
+        /**
+         * Gets the leased stack.
+         *
+         * @return the leased stack
+         * @throws IllegalStateException when the lease has been closed
+         */
+        public NativeStack getStack() {
+            NativeStack leasedStack = stack;
+            if (leasedStack == null) {
+                throw new IllegalStateException("Cannot use a stack after its lease has been closed.");
+            }
+            return leasedStack;
+        }
+
+        /**
+         * Frees everything allocated in the stack, and gives it back to the pool.
+         */
+        @Override
+        public void close() {
+            NativeStack leasedStack = stack;
+            if (leasedStack == null) {
+                return;
+            }
+            stack = null;
+            leasedStack.restore(0);
+            if (!pool.release(leasedStack)) {
+                // The pool is full.
+                leasedStack.close();
+            }
+        }
+    }
+
+    private static final class Chunk {
+        final long address;
+        final long size;
+        final long top;
+        final long baseDepth;
+        final @Nullable Chunk previous;
+
+        Chunk(long address, long size, long baseDepth, @Nullable Chunk previous) {
+            this.address = address;
+            this.size = size;
+            this.top = address + size;
+            this.baseDepth = baseDepth;
+            this.previous = previous;
+        }
+    }
+
+    /**
+     * The chunks of a stack, which also deletes them once the stack is closed or garbage collected.
+     */
+    private static final class Chunks implements HandleDeleter {
+        Chunk current;
+        // A released chunk, kept to avoid allocating a new chunk each time the stack crosses a chunk boundary.
+        @Nullable Chunk spare;
+
+        Chunks(long size) {
+            current = new Chunk(NativeMemory.access().allocateMemory(size), size, 0, null);
+        }
+
+        Chunk base() {
+            Chunk chunk = current;
+            while (chunk.previous != null) {
+                chunk = chunk.previous;
+            }
+            return chunk;
+        }
+
+        Chunk push(long size, long baseDepth) {
+            long address;
+            if (spare != null && spare.size >= size) {
+                address = spare.address;
+                size = spare.size;
+            } else {
+                if (spare != null) {
+                    NativeMemory.access().freeMemory(spare.address);
+                }
+                address = NativeMemory.access().allocateMemory(size);
+            }
+            spare = null;
+            current = new Chunk(address, size, baseDepth, current);
+            return current;
+        }
+
+        Chunk pop() {
+            Chunk released = current;
+            if (spare != null) {
+                NativeMemory.access().freeMemory(spare.address);
+            }
+            spare = released;
+            current = released.previous;
+            return current;
+        }
+
+        boolean hasSpareLargerThan(long size) {
+            return spare != null && spare.size > size;
+        }
+
+        void releaseSpareLargerThan(long size) {
+            if (hasSpareLargerThan(size)) {
+                NativeMemory.access().freeMemory(spare.address);
+                spare = null;
+            }
+        }
+
+        Chunk replaceBase(long size) {
+            long address = NativeMemory.access().allocateMemory(size);
+            NativeMemory.access().freeMemory(current.address);
+            current = new Chunk(address, size, 0, null);
+            return current;
+        }
+
+        @Override
+        public void deleteHandle(@Pointer long handle) {
+            // The base chunk may have been replaced since the stack was created, so the handle is ignored.
+            for (Chunk chunk = current; chunk != null; chunk = chunk.previous) {
+                NativeMemory.access().freeMemory(chunk.address);
+            }
+            if (spare != null) {
+                NativeMemory.access().freeMemory(spare.address);
+            }
+        }
+    }
+
+    private static final class SharedPool {
+        static final NativeStackPool INSTANCE = new NativeStackPool();
     }
 
     private static final class WrappingUEH extends NativeStack implements Thread.UncaughtExceptionHandler {
@@ -183,6 +545,9 @@ public class NativeStack extends NativeObject {
         public void uncaughtException(Thread t, Throwable e) {
             if (ueh != null) {
                 ueh.uncaughtException(t, e);
+            } else {
+                // The thread had terminated when optimized, so it had no handler: use the default handling.
+                t.getThreadGroup().uncaughtException(t, e);
             }
         }
     }
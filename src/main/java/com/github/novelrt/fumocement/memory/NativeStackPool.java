@@ -0,0 +1,120 @@
+// Copyright © Matt Jones and Contributors. Licensed under the MIT License (MIT). See LICENCE.md in the repository root for more information.
+
+package com.github.novelrt.fumocement.memory;
+
+/**
+ * A bounded pool of {@link NativeStack}s, which are leased to threads for the duration of a task
+ * instead of being attached to each thread forever.
+ * <p>
+ * A stack is created when a lease is requested while every stack is in use, so the number of stacks
+ * follows the number of threads using them at the same time, instead of the number of threads
+ * that have ever used one. Once a lease is closed, the stack is emptied and goes back into the pool,
+ * unless the pool already holds its maximum number of idle stacks, in which case it is freed.
+ * <p>
+ * The pool used by {@link NativeStack#lease()} keeps up to twice as many idle stacks as there are processors.
+ * This can be changed with the {@code novelrt.fumocement.stack.pool.size} system property.
+ * <p>
+ * <b>Example:</b>
+ * <pre>{@code executor.submit(() -> {
+ *   try (NativeStack.Lease lease = NativeStack.lease()) {
+ *     NativeStack stack = lease.getStack();
+ *     // ...
+ *   }
+ * });
+ * }</pre>
+ */
+public final class NativeStackPool {
+    static final int DEFAULT_MAX_IDLE_COUNT;
+
+    static {
+        String poolSize = System.getProperty("novelrt.fumocement.stack.pool.size");
+        if (poolSize != null) {
+            DEFAULT_MAX_IDLE_COUNT = validateMaxIdleCount(Integer.parseInt(poolSize));
+        } else {
+            DEFAULT_MAX_IDLE_COUNT = Runtime.getRuntime().availableProcessors() * 2;
+        }
+    }
+
+    private final int maxIdleCount;
+    private final long stackSize;
+    // Guarded by this. Used as a LIFO, so the most recently used stacks, which are likely to be in the CPU cache,
+    // are leased first.
+    private final NativeStack[] idleStacks;
+    private int idleCount;
+
+    /**
+     * Creates a new pool keeping the default number of idle stacks, of {@link NativeStack#DEFAULT_SIZE} bytes.
+     */
+    public NativeStackPool() {
+        this(DEFAULT_MAX_IDLE_COUNT, NativeStack.DEFAULT_SIZE);
+    }
+
+    /**
+     * Creates a new pool keeping up to {@code maxIdleCount} idle stacks, of {@code stackSize} bytes.
+     *
+     * @param maxIdleCount the maximum number of stacks kept when they are not in use
+     * @param stackSize    the size of the stacks
+     * @throws IllegalArgumentException when the number of idle stacks or the stack size is invalid
+     */
+    public NativeStackPool(int maxIdleCount, long stackSize) {
+        if (stackSize <= 0) {
+            throw new IllegalArgumentException("Invalid stack size: " + stackSize);
+        }
+        this.maxIdleCount = validateMaxIdleCount(maxIdleCount);
+        this.stackSize = stackSize;
+        this.idleStacks = new NativeStack[maxIdleCount];
+    }
+
+    private static int validateMaxIdleCount(int maxIdleCount) {
+        if (maxIdleCount < 0) {
+            throw new IllegalArgumentException("Invalid maximum number of idle stacks: " + maxIdleCount);
+        }
+        return maxIdleCount;
+    }
+
+    /**
+     * Leases a stack from this pool, which must be given back by closing the lease.
+     *
+     * @return a lease of an empty stack
+     */
+    public NativeStack.Lease lease() {
+        NativeStack stack = null;
+        synchronized (this) {
+            if (idleCount != 0) {
+                stack = idleStacks[--idleCount];
+                idleStacks[idleCount] = null;
+            }
+        }
+        if (stack == null) {
+            stack = new NativeStack(stackSize);
+        }
+        // A new lease each time, so that a closed lease can't reach the stack once it is leased again.
+        return new NativeStack.Lease(stack, this);
+    }
+
+    /**
+     * Gets how many stacks are waiting in this pool.
+     *
+     * @return the number of idle stacks
+     */
+    public synchronized int getIdleCount() {
+        return idleCount;
+    }
+
+    /**
+     * Gets the maximum number of stacks kept by this pool when they are not in use.
+     *
+     * @return the maximum number of idle stacks
+     */
+    public int getMaxIdleCount() {
+        return maxIdleCount;
+    }
+
+    synchronized boolean release(NativeStack stack) {
+        if (idleCount == maxIdleCount) {
+            return false;
+        }
+        idleStacks[idleCount++] = stack;
+        return true;
+    }
+}
@@ -0,0 +1,36 @@
+// Copyright © Matt Jones and Contributors. Licensed under the MIT License (MIT). See LICENCE.md in the repository root for more information.
+
+package com.github.novelrt.fumocement.memory;
+
+/**
+ * Builds the error messages shown when a native memory buffer such as a {@link NativeStack}
+ * or a {@link FrameArena} runs out of memory.
+ */
+final class OverflowDiagnostics {
+    private OverflowDiagnostics() {
+    }
+
+    /**
+     * Describes an overflow, with the possible reasons as to why it happened.
+     *
+     * @param bufferName the name of the overflowing buffer, in lower case (such as "stack")
+     * @param allocSize  the size of the allocation that overflowed
+     * @param bufferSize the size of the buffer
+     * @param reasons    the possible reasons of the overflow, with an optional hint on another line
+     * @return a message describing the overflow
+     */
+    static String describe(String bufferName, long allocSize, long bufferSize, String... reasons) {
+        StringBuilder message = new StringBuilder()
+                .append(Character.toUpperCase(bufferName.charAt(0))).append(bufferName.substring(1))
+                .append(" overflow while allocating ").append(allocSize).append(" bytes. ")
+                .append("The ").append(bufferName).append(" size is ").append(bufferSize).append(" bytes.\n")
+                .append("There can be multiple reasons as to why this happened:\n");
+        for (int i = 0; i < reasons.length; i++) {
+            if (i != 0) {
+                message.append('\n');
+            }
+            message.append("   - ").append(reasons[i].replace("\n", "\n     ")).append('\n');
+        }
+        return message.toString();
+    }
+}
@@ -0,0 +1,137 @@
+// Copyright © Matt Jones and Contributors. Licensed under the MIT License (MIT). See LICENCE.md in the repository root for more information.
+
+package com.github.novelrt.fumocement.memory;
+
+import com.github.novelrt.fumocement.Pointer;
+
+/**
+ * The portable implementation of {@link NativeKernels}, processing one element at a time
+ * through the {@link NativeMemoryAccessor}.
+ * <p>
+ * Faster implementations, given by a {@link NativeKernels.Provider}, fall back to this one for the ranges
+ * they don't handle.
+ */
+final class ScalarKernels implements NativeKernels.Implementation {
+    private final NativeMemoryAccessor accessor;
+
+    ScalarKernels(NativeMemoryAccessor accessor) {
+        this.accessor = accessor;
+    }
+
+    @Override
+    public boolean isVectorized() {
+        return false;
+    }
+
+    @Override
+    public void fillFloats(@Pointer long dst, long count, float value) {
+        accessor.fillFloat(dst, count, value);
+    }
+
+    @Override
+    public void fillInts(@Pointer long dst, long count, int value) {
+        accessor.fillInt(dst, count, value);
+    }
+
+    @Override
+    public void addFloats(@Pointer long dst, @Pointer long a, @Pointer long b, long count) {
+        for (long i = 0; i < count; i++) {
+            long offset = i * Float.BYTES;
+            accessor.putFloat(dst + offset, accessor.getFloat(a + offset) + accessor.getFloat(b + offset));
+        }
+    }
+
+    @Override
+    public void addInts(@Pointer long dst, @Pointer long a, @Pointer long b, long count) {
+        for (long i = 0; i < count; i++) {
+            long offset = i * Integer.BYTES;
+            accessor.putInt(dst + offset, accessor.getInt(a + offset) + accessor.getInt(b + offset));
+        }
+    }
+
+    @Override
+    public void scaleFloats(@Pointer long dst, @Pointer long src, long count, float factor) {
+        for (long i = 0; i < count; i++) {
+            long offset = i * Float.BYTES;
+            accessor.putFloat(dst + offset, accessor.getFloat(src + offset) * factor);
+        }
+    }
+
+    @Override
+    public void scaleInts(@Pointer long dst, @Pointer long src, long count, int factor) {
+        for (long i = 0; i < count; i++) {
+            long offset = i * Integer.BYTES;
+            accessor.putInt(dst + offset, accessor.getInt(src + offset) * factor);
+        }
+    }
+
+    @Override
+    public float minFloat(@Pointer long src, long count) {
+        float min = Float.POSITIVE_INFINITY;
+        for (long i = 0; i < count; i++) {
+            min = Math.min(min, accessor.getFloat(src + i * Float.BYTES));
+        }
+        return min;
+    }
+
+    @Override
+    public float maxFloat(@Pointer long src, long count) {
+        float max = Float.NEGATIVE_INFINITY;
+        for (long i = 0; i < count; i++) {
+            max = Math.max(max, accessor.getFloat(src + i * Float.BYTES));
+        }
+        return max;
+    }
+
+    @Override
+    public float sumFloat(@Pointer long src, long count) {
+        float sum = 0;
+        for (long i = 0; i < count; i++) {
+            sum += accessor.getFloat(src + i * Float.BYTES);
+        }
+        return sum;
+    }
+
+    @Override
+    public int minInt(@Pointer long src, long count) {
+        int min = Integer.MAX_VALUE;
+        for (long i = 0; i < count; i++) {
+            min = Math.min(min, accessor.getInt(src + i * Integer.BYTES));
+        }
+        return min;
+    }
+
+    @Override
+    public int maxInt(@Pointer long src, long count) {
+        int max = Integer.MIN_VALUE;
+        for (long i = 0; i < count; i++) {
+            max = Math.max(max, accessor.getInt(src + i * Integer.BYTES));
+        }
+        return max;
+    }
+
+    @Override
+    public int sumInt(@Pointer long src, long count) {
+        int sum = 0;
+        for (long i = 0; i < count; i++) {
+            sum += accessor.getInt(src + i * Integer.BYTES);
+        }
+        return sum;
+    }
+
+    @Override
+    public void convertFloatsToInts(@Pointer long dst, @Pointer long src, long count, float scale) {
+        for (long i = 0; i < count; i++) {
+            long offset = i * Float.BYTES;
+            accessor.putInt(dst + offset, (int) (accessor.getFloat(src + offset) * scale));
+        }
+    }
+
+    @Override
+    public void convertIntsToFloats(@Pointer long dst, @Pointer long src, long count, float scale) {
+        for (long i = 0; i < count; i++) {
+            long offset = i * Integer.BYTES;
+            accessor.putFloat(dst + offset, accessor.getInt(src + offset) * scale);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+// Copyright © Matt Jones and Contributors. Licensed under the MIT License (MIT). See LICENCE.md in the repository root for more information.
+
+package com.github.novelrt.fumocement.memory;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.MemoryAddress;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+
+/**
+ * The JFR events recorded by a {@link TrackingNativeMemoryAccessor}.
+ * <p>
+ * The {@code jdk.jfr} module is optional, so this class must only be loaded once it is known to be present.
+ */
+final class TrackingEvents {
+    private TrackingEvents() {
+    }
+
+    static void registerUsageEvent(TrackingNativeMemoryAccessor accessor) {
+        FlightRecorder.addPeriodicEvent(UsageEvent.class, () -> {
+            UsageEvent event = new UsageEvent();
+            event.liveBytes = accessor.getLiveBytes();
+            event.liveAllocations = accessor.getLiveAllocationCount();
+            event.allocatedBytes = accessor.getAllocatedBytes();
+            event.freedBytes = accessor.getFreedBytes();
+            event.commit();
+        });
+    }
+
+    static void allocated(long address, long size) {
+        AllocationEvent event = new AllocationEvent();
+        if (event.isEnabled()) {
+            event.address = address;
+            event.size = size;
+            event.commit();
+        }
+    }
+
+    static void freed(long address, long size) {
+        FreeEvent event = new FreeEvent();
+        if (event.isEnabled()) {
+            event.address = address;
+            event.size = size;
+            event.commit();
+        }
+    }
+
+    @Name("novelrt.fumocement.NativeAllocation")
+    @Label("Native Allocation")
+    @Description("Native memory allocated through the NativeMemoryAccessor")
+    @Category({"FumoCement", "Native Memory"})
+    @Enabled(false)
+    @StackTrace
+    static final class AllocationEvent extends Event {
+        @Label("Address")
+        @MemoryAddress
+        long address;
+
+        @Label("Size")
+        @DataAmount
+        long size;
+    }
+
+    @Name("novelrt.fumocement.NativeFree")
+    @Label("Native Free")
+    @Description("Native memory freed through the NativeMemoryAccessor")
+    @Category({"FumoCement", "Native Memory"})
+    @Enabled(false)
+    @StackTrace
+    static final class FreeEvent extends Event {
+        @Label("Address")
+        @MemoryAddress
+        long address;
+
+        @Label("Size")
+        @DataAmount
+        long size;
+    }
+
+    @Name("novelrt.fumocement.NativeMemoryUsage")
+    @Label("Native Memory Usage")
+    @Description("Native memory held through the NativeMemoryAccessor")
+    @Category({"FumoCement", "Native Memory"})
+    @Period("1 s")
+    @StackTrace(false)
+    static final class UsageEvent extends Event {
+        @Label("Live Bytes")
+        @DataAmount
+        long liveBytes;
+
+        @Label("Live Allocations")
+        long liveAllocations;
+
+        @Label("Allocated Bytes")
+        @Description("Total bytes allocated since startup")
+        @DataAmount
+        long allocatedBytes;
+
+        @Label("Freed Bytes")
+        @Description("Total bytes freed since startup")
+        @DataAmount
+        long freedBytes;
+    }
+}
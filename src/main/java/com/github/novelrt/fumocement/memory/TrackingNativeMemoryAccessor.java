@@ -0,0 +1,541 @@
+// Copyright © Matt Jones and Contributors. Licensed under the MIT License (MIT). See LICENCE.md in the repository root for more information.
+
+package com.github.novelrt.fumocement.memory;
+
+import com.github.novelrt.fumocement.Pointer;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link NativeMemoryAccessor} keeping track of the memory allocated by another accessor, to find out how much
+ * native memory is held through FumoCement, and where it has been allocated.
+ * <p>
+ * Every allocation is recorded until it is freed, along with its size, and the number of bytes allocated and freed
+ * is counted, so the allocation rate can be measured by reading the counters periodically. Every other operation
+ * goes straight to the tracked accessor.
+ * <p>
+ * The tracking is enabled by setting the {@code novelrt.fumocement.memory.tracking} system property to {@code true},
+ * in which case this accessor replaces the supported one with the highest priority, and is given by
+ * {@link NativeMemory#access()}. Otherwise, it doesn't look for any other accessor, and reports itself as
+ * {@linkplain ImplementationPriority#UNSUPPORTED unsupported} so it is never used.
+ * The stack trace of an allocation can be kept, for one allocation out of
+ * {@code novelrt.fumocement.memory.tracking.stackSampleRate} (0 by default, which keeps none),
+ * to be listed by {@link #getLiveAllocations()}.
+ * <p>
+ * When the {@code jdk.jfr} module is available, the following JFR events are recorded, unless the
+ * {@code novelrt.fumocement.memory.tracking.events} system property is set to {@code false}:
+ * <ul>
+ * <li>{@code novelrt.fumocement.NativeMemoryUsage}, every second, with the live bytes and the counters</li>
+ * <li>{@code novelrt.fumocement.NativeAllocation} and {@code novelrt.fumocement.NativeFree}, with their stack trace,
+ * which are disabled by default as there can be a lot of them</li>
+ * </ul>
+ * <p>
+ * <b>Example:</b>
+ * <pre>{@code // Run with -Dnovelrt.fumocement.memory.tracking=true
+ * if (NativeMemory.access() instanceof TrackingNativeMemoryAccessor tracking) {
+ *   logger.info("Native memory held: " + tracking.getLiveBytes() + " bytes");
+ * }
+ * }</pre>
+ */
+public final class TrackingNativeMemoryAccessor implements NativeMemoryAccessor {
+    private static final boolean ENABLED = Boolean.getBoolean("novelrt.fumocement.memory.tracking");
+    private static final int STACK_SAMPLE_RATE =
+            Integer.getInteger("novelrt.fumocement.memory.tracking.stackSampleRate", 0);
+    private static final boolean RECORD_EVENTS =
+            Boolean.parseBoolean(System.getProperty("novelrt.fumocement.memory.tracking.events", "true"));
+
+    // Only null when this accessor is unsupported.
+    private final NativeMemoryAccessor delegate;
+    private final ImplementationPriority priority;
+    private final int stackSampleRate;
+    private final boolean recordEvents;
+    private final ConcurrentHashMap<Long, Allocation> allocations = new ConcurrentHashMap<>();
+    private final LongAdder allocatedBytes = new LongAdder();
+    private final LongAdder freedBytes = new LongAdder();
+    private final LongAdder allocationCount = new LongAdder();
+    private final LongAdder freeCount = new LongAdder();
+    private final LongAdder untrackedFreeCount = new LongAdder();
+
+    /**
+     * Creates a new accessor configured with the system properties, tracking the supported
+     * {@link NativeMemoryAccessor} with the highest priority when the tracking is enabled.
+     * This constructor is used by the {@link ServiceLoader} when FumoCement is on the class path.
+     * <p>
+     * When the tracking is disabled, or when there's no other supported accessor, the new accessor is
+     * {@linkplain ImplementationPriority#UNSUPPORTED unsupported}, and must not be used.
+     *
+     * @see #provider()
+     */
+    public TrackingNativeMemoryAccessor() {
+        this(ENABLED ? findDelegate() : null);
+    }
+
+    private TrackingNativeMemoryAccessor(@Nullable NativeMemoryAccessor delegate) {
+        this(delegate, delegate != null ? ImplementationPriority.USER_OVERRIDE : ImplementationPriority.UNSUPPORTED,
+                STACK_SAMPLE_RATE, delegate != null && RECORD_EVENTS);
+    }
+
+    /**
+     * Creates a new accessor configured with the system properties, like {@link #TrackingNativeMemoryAccessor()}.
+     * This method is used by the {@link ServiceLoader} when FumoCement is on the module path.
+     *
+     * @return a new accessor, which is unsupported unless the tracking is enabled
+     */
+    public static TrackingNativeMemoryAccessor provider() {
+        return new TrackingNativeMemoryAccessor();
+    }
+
+    /**
+     * Creates a new accessor tracking the given accessor.
+     * <p>
+     * When {@code recordEvents} is {@code true}, a periodic JFR event reporting the usage of this accessor
+     * is registered for as long as the application runs.
+     *
+     * @param delegate        the accessor to track
+     * @param stackSampleRate keeps the stack trace of one allocation out of this number, or none if it is 0
+     * @param recordEvents    whether to record JFR events, when the {@code jdk.jfr} module is available
+     * @throws IllegalArgumentException when the stack sample rate is negative
+     */
+    public TrackingNativeMemoryAccessor(NativeMemoryAccessor delegate, int stackSampleRate, boolean recordEvents) {
+        this(Objects.requireNonNull(delegate), ImplementationPriority.USER_OVERRIDE, stackSampleRate, recordEvents);
+    }
+
+    private TrackingNativeMemoryAccessor(@Nullable NativeMemoryAccessor delegate,
+                                         ImplementationPriority priority,
+                                         int stackSampleRate,
+                                         boolean recordEvents) {
+        if (stackSampleRate < 0) {
+            throw new IllegalArgumentException("Invalid stack sample rate: " + stackSampleRate);
+        }
+        this.delegate = delegate;
+        this.priority = priority;
+        this.stackSampleRate = stackSampleRate;
+        // The module is optional, so TrackingEvents must not be loaded when it is missing.
+        this.recordEvents = recordEvents && ModuleLayer.boot().findModule("jdk.jfr").isPresent();
+        if (this.recordEvents) {
+            TrackingEvents.registerUsageEvent(this);
+        }
+    }
+
+    private static @Nullable NativeMemoryAccessor findDelegate() {
+        // NativeMemoryAccessor.getInstance() can't be used, as this is called while it is being initialized.
+        return ServiceLoader.load(NativeMemoryAccessor.class)
+                .stream()
+                .filter(provider -> provider.type() != TrackingNativeMemoryAccessor.class)
+                .map(ServiceLoader.Provider::get)
+                .filter(accessor -> accessor.getPriority() != ImplementationPriority.UNSUPPORTED)
+                .max(Comparator.comparing(NativeMemoryAccessor::getPriority))
+                .orElse(null);
+    }
+
+    /**
+     * Gets the tracked accessor.
+     *
+     * @return the tracked accessor, or {@code null} if this accessor is unsupported
+     */
+    public @Nullable NativeMemoryAccessor getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Gets the number of bytes allocated and not freed yet.
+     *
+     * @return the number of live bytes
+     */
+    public long getLiveBytes() {
+        return allocatedBytes.sum() - freedBytes.sum();
+    }
+
+    /**
+     * Gets the number of allocations not freed yet.
+     *
+     * @return the number of live allocations
+     */
+    public long getLiveAllocationCount() {
+        return allocations.mappingCount();
+    }
+
+    /**
+     * Gets the total number of bytes allocated since this accessor has been created.
+     *
+     * @return the number of allocated bytes
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes.sum();
+    }
+
+    /**
+     * Gets the total number of bytes freed since this accessor has been created.
+     *
+     * @return the number of freed bytes
+     */
+    public long getFreedBytes() {
+        return freedBytes.sum();
+    }
+
+    public long getAllocationCount() {
+        return allocationCount.sum();
+    }
+
+    public long getFreeCount() {
+        return freeCount.sum();
+    }
+
+    /**
+     * Gets the number of times an address that wasn't allocated by this accessor has been freed.
+     * This happens when freeing memory twice, or memory allocated by another accessor or by native code.
+     *
+     * @return the number of untracked frees
+     */
+    public long getUntrackedFreeCount() {
+        return untrackedFreeCount.sum();
+    }
+
+    /**
+     * Lists the allocations not freed yet, such as to find leaks.
+     * The list is a snapshot, and may miss allocations done or freed while it is being created.
+     *
+     * @return the live allocations
+     */
+    public List<Allocation> getLiveAllocations() {
+        return new ArrayList<>(allocations.values());
+    }
+
+    @Override
+    public ImplementationPriority getPriority() {
+        return priority;
+    }
+
+    @Override
+    public @Pointer long allocateMemory(long bytes) {
+        long address = delegate.allocateMemory(bytes);
+        if (address != 0) {
+            Throwable allocationSite =
+                    stackSampleRate != 0 && ThreadLocalRandom.current().nextInt(stackSampleRate) == 0 ?
+                            new Throwable("Native allocation of " + bytes + " bytes") :
+                            null;
+            allocations.put(address, new Allocation(address, bytes, allocationSite));
+            allocatedBytes.add(bytes);
+            allocationCount.increment();
+            if (recordEvents) {
+                TrackingEvents.allocated(address, bytes);
+            }
+        }
+        return address;
+    }
+
+    @Override
+    public void freeMemory(@Pointer long address) {
+        if (address != 0) {
+            // Forget the address before freeing it, as it can be allocated again right after.
+            Allocation allocation = allocations.remove(address);
+            if (allocation != null) {
+                freedBytes.add(allocation.size);
+                freeCount.increment();
+                if (recordEvents) {
+                    TrackingEvents.freed(address, allocation.size);
+                }
+            } else {
+                untrackedFreeCount.increment();
+            }
+        }
+        delegate.freeMemory(address);
+    }
+
+    @Override
+    public boolean getBoolean(@Pointer long address) {
+        return delegate.getBoolean(address);
+    }
+
+    @Override
+    public void putBoolean(@Pointer long address, boolean value) {
+        delegate.putBoolean(address, value);
+    }
+
+    @Override
+    public byte getByte(@Pointer long address) {
+        return delegate.getByte(address);
+    }
+
+    @Override
+    public void putByte(@Pointer long address, byte x) {
+        delegate.putByte(address, x);
+    }
+
+    @Override
+    public short getShort(@Pointer long address) {
+        return delegate.getShort(address);
+    }
+
+    @Override
+    public void putShort(@Pointer long address, short x) {
+        delegate.putShort(address, x);
+    }
+
+    @Override
+    public char getChar(@Pointer long address) {
+        return delegate.getChar(address);
+    }
+
+    @Override
+    public void putChar(@Pointer long address, char x) {
+        delegate.putChar(address, x);
+    }
+
+    @Override
+    public int getInt(@Pointer long address) {
+        return delegate.getInt(address);
+    }
+
+    @Override
+    public void putInt(@Pointer long address, int x) {
+        delegate.putInt(address, x);
+    }
+
+    @Override
+    public long getLong(@Pointer long address) {
+        return delegate.getLong(address);
+    }
+
+    @Override
+    public void putLong(@Pointer long address, long x) {
+        delegate.putLong(address, x);
+    }
+
+    @Override
+    public float getFloat(@Pointer long address) {
+        return delegate.getFloat(address);
+    }
+
+    @Override
+    public void putFloat(@Pointer long address, float x) {
+        delegate.putFloat(address, x);
+    }
+
+    @Override
+    public double getDouble(@Pointer long address) {
+        return delegate.getDouble(address);
+    }
+
+    @Override
+    public void putDouble(@Pointer long address, double x) {
+        delegate.putDouble(address, x);
+    }
+
+    @Override
+    public long getAddress(@Pointer long address) {
+        return delegate.getAddress(address);
+    }
+
+    @Override
+    public void putAddress(@Pointer long address, long x) {
+        delegate.putAddress(address, x);
+    }
+
+    @Override
+    public void getByteArray(@Pointer long address, byte[] array, int offset, int length) {
+        delegate.getByteArray(address, array, offset, length);
+    }
+
+    @Override
+    public void putByteArray(@Pointer long address, byte[] array, int offset, int length) {
+        delegate.putByteArray(address, array, offset, length);
+    }
+
+    @Override
+    public void getShortArray(@Pointer long address, short[] array, int offset, int length) {
+        delegate.getShortArray(address, array, offset, length);
+    }
+
+    @Override
+    public void putShortArray(@Pointer long address, short[] array, int offset, int length) {
+        delegate.putShortArray(address, array, offset, length);
+    }
+
+    @Override
+    public void getIntArray(@Pointer long address, int[] array, int offset, int length) {
+        delegate.getIntArray(address, array, offset, length);
+    }
+
+    @Override
+    public void putIntArray(@Pointer long address, int[] array, int offset, int length) {
+        delegate.putIntArray(address, array, offset, length);
+    }
+
+    @Override
+    public void getLongArray(@Pointer long address, long[] array, int offset, int length) {
+        delegate.getLongArray(address, array, offset, length);
+    }
+
+    @Override
+    public void putLongArray(@Pointer long address, long[] array, int offset, int length) {
+        delegate.putLongArray(address, array, offset, length);
+    }
+
+    @Override
+    public void getFloatArray(@Pointer long address, float[] array, int offset, int length) {
+        delegate.getFloatArray(address, array, offset, length);
+    }
+
+    @Override
+    public void putFloatArray(@Pointer long address, float[] array, int offset, int length) {
+        delegate.putFloatArray(address, array, offset, length);
+    }
+
+    @Override
+    public void getDoubleArray(@Pointer long address, double[] array, int offset, int length) {
+        delegate.getDoubleArray(address, array, offset, length);
+    }
+
+    @Override
+    public void putDoubleArray(@Pointer long address, double[] array, int offset, int length) {
+        delegate.putDoubleArray(address, array, offset, length);
+    }
+
+    @Override
+    public void setMemory(@Pointer long address, long bytes, byte value) {
+        delegate.setMemory(address, bytes, value);
+    }
+
+    @Override
+    public void fillShort(@Pointer long address, long count, short value) {
+        delegate.fillShort(address, count, value);
+    }
+
+    @Override
+    public void fillInt(@Pointer long address, long count, int value) {
+        delegate.fillInt(address, count, value);
+    }
+
+    @Override
+    public void fillLong(@Pointer long address, long count, long value) {
+        delegate.fillLong(address, count, value);
+    }
+
+    @Override
+    public void fillFloat(@Pointer long address, long count, float value) {
+        delegate.fillFloat(address, count, value);
+    }
+
+    @Override
+    public void fillDouble(@Pointer long address, long count, double value) {
+        delegate.fillDouble(address, count, value);
+    }
+
+    @Override
+    public boolean canAccessAtomically() {
+        return delegate.canAccessAtomically();
+    }
+
+    @Override
+    public int getIntVolatile(@Pointer long address) {
+        return delegate.getIntVolatile(address);
+    }
+
+    @Override
+    public void putIntVolatile(@Pointer long address, int x) {
+        delegate.putIntVolatile(address, x);
+    }
+
+    @Override
+    public void putIntOrdered(@Pointer long address, int x) {
+        delegate.putIntOrdered(address, x);
+    }
+
+    @Override
+    public boolean compareAndSetInt(@Pointer long address, int expected, int x) {
+        return delegate.compareAndSetInt(address, expected, x);
+    }
+
+    @Override
+    public long getLongVolatile(@Pointer long address) {
+        return delegate.getLongVolatile(address);
+    }
+
+    @Override
+    public void putLongVolatile(@Pointer long address, long x) {
+        delegate.putLongVolatile(address, x);
+    }
+
+    @Override
+    public void putLongOrdered(@Pointer long address, long x) {
+        delegate.putLongOrdered(address, x);
+    }
+
+    @Override
+    public boolean compareAndSetLong(@Pointer long address, long expected, long x) {
+        return delegate.compareAndSetLong(address, expected, x);
+    }
+
+    @Override
+    public long getAndAddLong(@Pointer long address, long delta) {
+        return delegate.getAndAddLong(address, delta);
+    }
+
+    @Override
+    public boolean canAccessDirectBuffers() {
+        return delegate.canAccessDirectBuffers();
+    }
+
+    @Override
+    public @Pointer long getDirectBufferAddress(Buffer buffer) {
+        return delegate.getDirectBufferAddress(buffer);
+    }
+
+    @Override
+    public void freeDirectBuffer(ByteBuffer buffer) {
+        delegate.freeDirectBuffer(buffer);
+    }
+
+    @Override
+    public void copyMemory(@Pointer long srcAddress, @Pointer long destAddress, long bytes) {
+        delegate.copyMemory(srcAddress, destAddress, bytes);
+    }
+
+    @Override
+    public void zeroMemory(long address, long bytes) {
+        delegate.zeroMemory(address, bytes);
+    }
+
+    /**
+     * A block of native memory allocated through a {@link TrackingNativeMemoryAccessor}.
+     */
+    public static final class Allocation {
+        private final long address;
+        private final long size;
+        private final @Nullable Throwable allocationSite;
+
+        private Allocation(long address, long size, @Nullable Throwable allocationSite) {
+            this.address = address;
+            this.size = size;
+            this.allocationSite = allocationSite;
+        }
+
+        public @Pointer long getAddress() {
+            return address;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Gets the stack trace of the thread that allocated this block, if it has been sampled.
+         *
+         * @return the stack trace of the allocation, or {@code null} if it hasn't been sampled
+         */
+        public StackTraceElement @Nullable [] getAllocationSite() {
+            return allocationSite == null ? null : allocationSite.getStackTrace();
+        }
+    }
+}
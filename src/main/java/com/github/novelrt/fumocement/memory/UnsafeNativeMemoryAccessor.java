@@ -6,10 +6,19 @@ import com.github.novelrt.fumocement.Pointer;
 import sun.misc.Unsafe;
 
 import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Objects;
 
 public class UnsafeNativeMemoryAccessor implements NativeMemoryAccessor {
+    // Large copies are split so the JVM can reach safepoints in-between, like java.nio does.
+    private static final long COPY_CHUNK_SIZE = 1024 * 1024;
+    // Below this count, filling value by value is faster than copying memory around.
+    private static final long FILL_LOOP_THRESHOLD = 32;
+
     private static final Unsafe unsafe;
     private static final boolean HAS_UNSAFE;
+    private static final long BUFFER_ADDRESS_OFFSET;
 
     static {
         Unsafe foundUnsafe = null;
@@ -23,6 +32,16 @@ public class UnsafeNativeMemoryAccessor implements NativeMemoryAccessor {
         }
         unsafe = foundUnsafe;
         HAS_UNSAFE = unsafe != null;
+
+        long addressOffset = -1;
+        if (HAS_UNSAFE) {
+            try {
+                addressOffset = unsafe.objectFieldOffset(Buffer.class.getDeclaredField("address"));
+            } catch (Exception e) {
+                // The fields of Buffer aren't the ones of OpenJDK, so we'll have to use JNI.
+            }
+        }
+        BUFFER_ADDRESS_OFFSET = addressOffset;
     }
 
     @Override
@@ -122,4 +141,243 @@ public class UnsafeNativeMemoryAccessor implements NativeMemoryAccessor {
     public void zeroMemory(long address, long bytes) {
         unsafe.setMemory(address, bytes, (byte) 0);
     }
+
+    @Override
+    public void getByteArray(@Pointer long address, byte[] array, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, array.length);
+        copyToArray(address, array, Unsafe.ARRAY_BYTE_BASE_OFFSET + offset, length);
+    }
+
+    @Override
+    public void putByteArray(@Pointer long address, byte[] array, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, array.length);
+        copyFromArray(array, Unsafe.ARRAY_BYTE_BASE_OFFSET + offset, address, length);
+    }
+
+    @Override
+    public void getShortArray(@Pointer long address, short[] array, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, array.length);
+        copyToArray(address, array, Unsafe.ARRAY_SHORT_BASE_OFFSET + (long) offset * 2, (long) length * 2);
+    }
+
+    @Override
+    public void putShortArray(@Pointer long address, short[] array, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, array.length);
+        copyFromArray(array, Unsafe.ARRAY_SHORT_BASE_OFFSET + (long) offset * 2, address, (long) length * 2);
+    }
+
+    @Override
+    public void getIntArray(@Pointer long address, int[] array, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, array.length);
+        copyToArray(address, array, Unsafe.ARRAY_INT_BASE_OFFSET + (long) offset * 4, (long) length * 4);
+    }
+
+    @Override
+    public void putIntArray(@Pointer long address, int[] array, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, array.length);
+        copyFromArray(array, Unsafe.ARRAY_INT_BASE_OFFSET + (long) offset * 4, address, (long) length * 4);
+    }
+
+    @Override
+    public void getLongArray(@Pointer long address, long[] array, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, array.length);
+        copyToArray(address, array, Unsafe.ARRAY_LONG_BASE_OFFSET + (long) offset * 8, (long) length * 8);
+    }
+
+    @Override
+    public void putLongArray(@Pointer long address, long[] array, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, array.length);
+        copyFromArray(array, Unsafe.ARRAY_LONG_BASE_OFFSET + (long) offset * 8, address, (long) length * 8);
+    }
+
+    @Override
+    public void getFloatArray(@Pointer long address, float[] array, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, array.length);
+        copyToArray(address, array, Unsafe.ARRAY_FLOAT_BASE_OFFSET + (long) offset * 4, (long) length * 4);
+    }
+
+    @Override
+    public void putFloatArray(@Pointer long address, float[] array, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, array.length);
+        copyFromArray(array, Unsafe.ARRAY_FLOAT_BASE_OFFSET + (long) offset * 4, address, (long) length * 4);
+    }
+
+    @Override
+    public void getDoubleArray(@Pointer long address, double[] array, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, array.length);
+        copyToArray(address, array, Unsafe.ARRAY_DOUBLE_BASE_OFFSET + (long) offset * 8, (long) length * 8);
+    }
+
+    @Override
+    public void putDoubleArray(@Pointer long address, double[] array, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, array.length);
+        copyFromArray(array, Unsafe.ARRAY_DOUBLE_BASE_OFFSET + (long) offset * 8, address, (long) length * 8);
+    }
+
+    @Override
+    public void setMemory(@Pointer long address, long bytes, byte value) {
+        unsafe.setMemory(address, bytes, value);
+    }
+
+    @Override
+    public void fillShort(@Pointer long address, long count, short value) {
+        if (count <= FILL_LOOP_THRESHOLD) {
+            for (long i = 0; i < count; i++) {
+                unsafe.putShort(address + i * 2, value);
+            }
+        } else {
+            unsafe.putShort(address, value);
+            fillByDoubling(address, count * 2, 2);
+        }
+    }
+
+    @Override
+    public void fillInt(@Pointer long address, long count, int value) {
+        if (count <= FILL_LOOP_THRESHOLD) {
+            for (long i = 0; i < count; i++) {
+                unsafe.putInt(address + i * 4, value);
+            }
+        } else {
+            unsafe.putInt(address, value);
+            fillByDoubling(address, count * 4, 4);
+        }
+    }
+
+    @Override
+    public void fillLong(@Pointer long address, long count, long value) {
+        if (count <= FILL_LOOP_THRESHOLD) {
+            for (long i = 0; i < count; i++) {
+                unsafe.putLong(address + i * 8, value);
+            }
+        } else {
+            unsafe.putLong(address, value);
+            fillByDoubling(address, count * 8, 8);
+        }
+    }
+
+    @Override
+    public void fillFloat(@Pointer long address, long count, float value) {
+        if (count <= FILL_LOOP_THRESHOLD) {
+            for (long i = 0; i < count; i++) {
+                unsafe.putFloat(address + i * 4, value);
+            }
+        } else {
+            unsafe.putFloat(address, value);
+            fillByDoubling(address, count * 4, 4);
+        }
+    }
+
+    @Override
+    public void fillDouble(@Pointer long address, long count, double value) {
+        if (count <= FILL_LOOP_THRESHOLD) {
+            for (long i = 0; i < count; i++) {
+                unsafe.putDouble(address + i * 8, value);
+            }
+        } else {
+            unsafe.putDouble(address, value);
+            fillByDoubling(address, count * 8, 8);
+        }
+    }
+
+    @Override
+    public int getIntVolatile(@Pointer long address) {
+        return unsafe.getIntVolatile(null, address);
+    }
+
+    @Override
+    public void putIntVolatile(@Pointer long address, int x) {
+        unsafe.putIntVolatile(null, address, x);
+    }
+
+    @Override
+    public void putIntOrdered(@Pointer long address, int x) {
+        unsafe.putOrderedInt(null, address, x);
+    }
+
+    @Override
+    public boolean compareAndSetInt(@Pointer long address, int expected, int x) {
+        return unsafe.compareAndSwapInt(null, address, expected, x);
+    }
+
+    @Override
+    public long getLongVolatile(@Pointer long address) {
+        return unsafe.getLongVolatile(null, address);
+    }
+
+    @Override
+    public void putLongVolatile(@Pointer long address, long x) {
+        unsafe.putLongVolatile(null, address, x);
+    }
+
+    @Override
+    public void putLongOrdered(@Pointer long address, long x) {
+        unsafe.putOrderedLong(null, address, x);
+    }
+
+    @Override
+    public boolean compareAndSetLong(@Pointer long address, long expected, long x) {
+        return unsafe.compareAndSwapLong(null, address, expected, x);
+    }
+
+    @Override
+    public long getAndAddLong(@Pointer long address, long delta) {
+        return unsafe.getAndAddLong(null, address, delta);
+    }
+
+    @Override
+    public boolean canAccessAtomically() {
+        return HAS_UNSAFE;
+    }
+
+    @Override
+    public boolean canAccessDirectBuffers() {
+        return BUFFER_ADDRESS_OFFSET != -1;
+    }
+
+    @Override
+    public @Pointer long getDirectBufferAddress(Buffer buffer) {
+        if (!canAccessDirectBuffers()) {
+            return NativeMemoryAccessor.super.getDirectBufferAddress(buffer);
+        }
+        if (!buffer.isDirect()) {
+            throw new IllegalArgumentException("The buffer is not direct.");
+        }
+        return unsafe.getLong(buffer, BUFFER_ADDRESS_OFFSET);
+    }
+
+    @Override
+    public void freeDirectBuffer(ByteBuffer buffer) {
+        if (HAS_UNSAFE) {
+            unsafe.invokeCleaner(buffer);
+        }
+    }
+
+    private static void copyToArray(long srcAddress, Object array, long arrayOffset, long bytes) {
+        while (bytes > 0) {
+            long size = Math.min(bytes, COPY_CHUNK_SIZE);
+            unsafe.copyMemory(null, srcAddress, array, arrayOffset, size);
+            srcAddress += size;
+            arrayOffset += size;
+            bytes -= size;
+        }
+    }
+
+    private static void copyFromArray(Object array, long arrayOffset, long destAddress, long bytes) {
+        while (bytes > 0) {
+            long size = Math.min(bytes, COPY_CHUNK_SIZE);
+            unsafe.copyMemory(array, arrayOffset, null, destAddress, size);
+            arrayOffset += size;
+            destAddress += size;
+            bytes -= size;
+        }
+    }
+
+    private static void fillByDoubling(long address, long bytes, long filledBytes) {
+        // Copy the filled part right after itself until everything is filled.
+        while (filledBytes < bytes) {
+            long size = Math.min(filledBytes, bytes - filledBytes);
+            unsafe.copyMemory(address, address + filledBytes, size);
+            filledBytes += size;
+        }
+    }
 }
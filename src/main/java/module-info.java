@@ -5,6 +5,7 @@
  */
 module novelrt.fumocement {
     requires static org.jetbrains.annotations;
+    requires static jdk.jfr;
     requires jdk.unsupported;
 
     exports com.github.novelrt.fumocement;
@@ -14,8 +15,10 @@ module novelrt.fumocement {
 
     uses com.github.novelrt.fumocement.memory.NativeMemoryAccessor;
     uses com.github.novelrt.fumocement.layout.NativeLayouts;
+    uses com.github.novelrt.fumocement.memory.NativeKernels.Provider;
     provides com.github.novelrt.fumocement.memory.NativeMemoryAccessor with
-            com.github.novelrt.fumocement.memory.UnsafeNativeMemoryAccessor;
+            com.github.novelrt.fumocement.memory.UnsafeNativeMemoryAccessor,
+            com.github.novelrt.fumocement.memory.TrackingNativeMemoryAccessor;
 
     provides com.github.novelrt.fumocement.layout.NativeLayouts with
             com.github.novelrt.fumocement.layout.LP64Layouts,
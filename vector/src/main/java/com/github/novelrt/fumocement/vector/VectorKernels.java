@@ -0,0 +1,353 @@
+// Copyright © Matt Jones and Contributors. Licensed under the MIT License (MIT). See LICENCE.md in the repository root for more information.
+
+package com.github.novelrt.fumocement.vector;
+
+import com.github.novelrt.fumocement.Pointer;
+import com.github.novelrt.fumocement.Pointers;
+import com.github.novelrt.fumocement.memory.NativeKernels;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The implementation of {@link NativeKernels} using the Vector API, which processes as many elements
+ * at once as the CPU allows.
+ * <p>
+ * The native memory is accessed through direct {@link ByteBuffer}s, which can only address 2 GB:
+ * larger ranges are processed in multiple chunks. Small ranges go through the scalar implementation,
+ * as creating the buffers would cost more than what vectorizing saves.
+ * <p>
+ * This class is given to {@link NativeKernels} by the {@link VectorKernelsProvider}, when this module and the
+ * {@code jdk.incubator.vector} module are both present.
+ */
+final class VectorKernels implements NativeKernels.Implementation {
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    private static final ByteOrder ORDER = ByteOrder.nativeOrder();
+
+    // Both element types have the same size, so a chunk always holds the same number of floats and ints.
+    private static final int ELEMENT_SIZE = Float.BYTES;
+    private static final int MAX_CHUNK_LENGTH = (1 << 30) / ELEMENT_SIZE;
+    private static final int MIN_VECTORIZED_LENGTH = 64;
+
+    private final NativeKernels.Implementation fallback;
+
+    VectorKernels(NativeKernels.Implementation fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public boolean isVectorized() {
+        return true;
+    }
+
+    @Override
+    public void fillFloats(@Pointer long dst, long count, float value) {
+        if (count < MIN_VECTORIZED_LENGTH) {
+            fallback.fillFloats(dst, count, value);
+            return;
+        }
+        FloatVector vector = FloatVector.broadcast(FLOATS, value);
+        for (long done = 0; done < count; done += MAX_CHUNK_LENGTH) {
+            int length = chunkLength(count, done);
+            ByteBuffer buffer = view(dst, done, length);
+            int i = 0;
+            for (int bound = FLOATS.loopBound(length); i < bound; i += FLOATS.length()) {
+                vector.intoByteBuffer(buffer, i * ELEMENT_SIZE, ORDER);
+            }
+            for (; i < length; i++) {
+                buffer.putFloat(i * ELEMENT_SIZE, value);
+            }
+        }
+    }
+
+    @Override
+    public void fillInts(@Pointer long dst, long count, int value) {
+        if (count < MIN_VECTORIZED_LENGTH) {
+            fallback.fillInts(dst, count, value);
+            return;
+        }
+        IntVector vector = IntVector.broadcast(INTS, value);
+        for (long done = 0; done < count; done += MAX_CHUNK_LENGTH) {
+            int length = chunkLength(count, done);
+            ByteBuffer buffer = view(dst, done, length);
+            int i = 0;
+            for (int bound = INTS.loopBound(length); i < bound; i += INTS.length()) {
+                vector.intoByteBuffer(buffer, i * ELEMENT_SIZE, ORDER);
+            }
+            for (; i < length; i++) {
+                buffer.putInt(i * ELEMENT_SIZE, value);
+            }
+        }
+    }
+
+    @Override
+    public void addFloats(@Pointer long dst, @Pointer long a, @Pointer long b, long count) {
+        if (count < MIN_VECTORIZED_LENGTH) {
+            fallback.addFloats(dst, a, b, count);
+            return;
+        }
+        for (long done = 0; done < count; done += MAX_CHUNK_LENGTH) {
+            int length = chunkLength(count, done);
+            addFloats(view(dst, done, length), view(a, done, length), view(b, done, length), length);
+        }
+    }
+
+    static void addFloats(ByteBuffer dst, ByteBuffer a, ByteBuffer b, int length) {
+        int i = 0;
+        for (int bound = FLOATS.loopBound(length); i < bound; i += FLOATS.length()) {
+            int offset = i * ELEMENT_SIZE;
+            FloatVector.fromByteBuffer(FLOATS, a, offset, ORDER)
+                    .add(FloatVector.fromByteBuffer(FLOATS, b, offset, ORDER))
+                    .intoByteBuffer(dst, offset, ORDER);
+        }
+        for (; i < length; i++) {
+            int offset = i * ELEMENT_SIZE;
+            dst.putFloat(offset, a.getFloat(offset) + b.getFloat(offset));
+        }
+    }
+
+    @Override
+    public void addInts(@Pointer long dst, @Pointer long a, @Pointer long b, long count) {
+        if (count < MIN_VECTORIZED_LENGTH) {
+            fallback.addInts(dst, a, b, count);
+            return;
+        }
+        for (long done = 0; done < count; done += MAX_CHUNK_LENGTH) {
+            int length = chunkLength(count, done);
+            addInts(view(dst, done, length), view(a, done, length), view(b, done, length), length);
+        }
+    }
+
+    static void addInts(ByteBuffer dst, ByteBuffer a, ByteBuffer b, int length) {
+        int i = 0;
+        for (int bound = INTS.loopBound(length); i < bound; i += INTS.length()) {
+            int offset = i * ELEMENT_SIZE;
+            IntVector.fromByteBuffer(INTS, a, offset, ORDER)
+                    .add(IntVector.fromByteBuffer(INTS, b, offset, ORDER))
+                    .intoByteBuffer(dst, offset, ORDER);
+        }
+        for (; i < length; i++) {
+            int offset = i * ELEMENT_SIZE;
+            dst.putInt(offset, a.getInt(offset) + b.getInt(offset));
+        }
+    }
+
+    @Override
+    public void scaleFloats(@Pointer long dst, @Pointer long src, long count, float factor) {
+        if (count < MIN_VECTORIZED_LENGTH) {
+            fallback.scaleFloats(dst, src, count, factor);
+            return;
+        }
+        for (long done = 0; done < count; done += MAX_CHUNK_LENGTH) {
+            int length = chunkLength(count, done);
+            scaleFloats(view(dst, done, length), view(src, done, length), length, factor);
+        }
+    }
+
+    static void scaleFloats(ByteBuffer dst, ByteBuffer src, int length, float factor) {
+        int i = 0;
+        for (int bound = FLOATS.loopBound(length); i < bound; i += FLOATS.length()) {
+            int offset = i * ELEMENT_SIZE;
+            FloatVector.fromByteBuffer(FLOATS, src, offset, ORDER).mul(factor).intoByteBuffer(dst, offset, ORDER);
+        }
+        for (; i < length; i++) {
+            int offset = i * ELEMENT_SIZE;
+            dst.putFloat(offset, src.getFloat(offset) * factor);
+        }
+    }
+
+    @Override
+    public void scaleInts(@Pointer long dst, @Pointer long src, long count, int factor) {
+        if (count < MIN_VECTORIZED_LENGTH) {
+            fallback.scaleInts(dst, src, count, factor);
+            return;
+        }
+        for (long done = 0; done < count; done += MAX_CHUNK_LENGTH) {
+            int length = chunkLength(count, done);
+            scaleInts(view(dst, done, length), view(src, done, length), length, factor);
+        }
+    }
+
+    static void scaleInts(ByteBuffer dst, ByteBuffer src, int length, int factor) {
+        int i = 0;
+        for (int bound = INTS.loopBound(length); i < bound; i += INTS.length()) {
+            int offset = i * ELEMENT_SIZE;
+            IntVector.fromByteBuffer(INTS, src, offset, ORDER).mul(factor).intoByteBuffer(dst, offset, ORDER);
+        }
+        for (; i < length; i++) {
+            int offset = i * ELEMENT_SIZE;
+            dst.putInt(offset, src.getInt(offset) * factor);
+        }
+    }
+
+    @Override
+    public float minFloat(@Pointer long src, long count) {
+        if (count < MIN_VECTORIZED_LENGTH) {
+            return fallback.minFloat(src, count);
+        }
+        float min = Float.POSITIVE_INFINITY;
+        for (long done = 0; done < count; done += MAX_CHUNK_LENGTH) {
+            int length = chunkLength(count, done);
+            min = Math.min(min, reduceFloats(view(src, done, length), length, VectorOperators.MIN, min));
+        }
+        return min;
+    }
+
+    @Override
+    public float maxFloat(@Pointer long src, long count) {
+        if (count < MIN_VECTORIZED_LENGTH) {
+            return fallback.maxFloat(src, count);
+        }
+        float max = Float.NEGATIVE_INFINITY;
+        for (long done = 0; done < count; done += MAX_CHUNK_LENGTH) {
+            int length = chunkLength(count, done);
+            max = Math.max(max, reduceFloats(view(src, done, length), length, VectorOperators.MAX, max));
+        }
+        return max;
+    }
+
+    @Override
+    public float sumFloat(@Pointer long src, long count) {
+        if (count < MIN_VECTORIZED_LENGTH) {
+            return fallback.sumFloat(src, count);
+        }
+        float sum = 0;
+        for (long done = 0; done < count; done += MAX_CHUNK_LENGTH) {
+            int length = chunkLength(count, done);
+            sum += reduceFloats(view(src, done, length), length, VectorOperators.ADD, 0);
+        }
+        return sum;
+    }
+
+    static float reduceFloats(ByteBuffer src, int length, VectorOperators.Associative operator, float identity) {
+        // Keep one accumulator per lane, and only reduce the lanes at the end.
+        FloatVector accumulator = FloatVector.broadcast(FLOATS, identity);
+        int i = 0;
+        for (int bound = FLOATS.loopBound(length); i < bound; i += FLOATS.length()) {
+            accumulator = accumulator.lanewise(operator, FloatVector.fromByteBuffer(FLOATS, src, i * ELEMENT_SIZE, ORDER));
+        }
+        FloatVector tail = FloatVector.broadcast(FLOATS, identity);
+        for (int lane = 0; i < length; i++, lane++) {
+            tail = tail.withLane(lane, src.getFloat(i * ELEMENT_SIZE));
+        }
+        return accumulator.lanewise(operator, tail).reduceLanes(operator);
+    }
+
+    @Override
+    public int minInt(@Pointer long src, long count) {
+        if (count < MIN_VECTORIZED_LENGTH) {
+            return fallback.minInt(src, count);
+        }
+        int min = Integer.MAX_VALUE;
+        for (long done = 0; done < count; done += MAX_CHUNK_LENGTH) {
+            int length = chunkLength(count, done);
+            min = Math.min(min, reduceInts(view(src, done, length), length, VectorOperators.MIN, min));
+        }
+        return min;
+    }
+
+    @Override
+    public int maxInt(@Pointer long src, long count) {
+        if (count < MIN_VECTORIZED_LENGTH) {
+            return fallback.maxInt(src, count);
+        }
+        int max = Integer.MIN_VALUE;
+        for (long done = 0; done < count; done += MAX_CHUNK_LENGTH) {
+            int length = chunkLength(count, done);
+            max = Math.max(max, reduceInts(view(src, done, length), length, VectorOperators.MAX, max));
+        }
+        return max;
+    }
+
+    @Override
+    public int sumInt(@Pointer long src, long count) {
+        if (count < MIN_VECTORIZED_LENGTH) {
+            return fallback.sumInt(src, count);
+        }
+        int sum = 0;
+        for (long done = 0; done < count; done += MAX_CHUNK_LENGTH) {
+            int length = chunkLength(count, done);
+            sum += reduceInts(view(src, done, length), length, VectorOperators.ADD, 0);
+        }
+        return sum;
+    }
+
+    static int reduceInts(ByteBuffer src, int length, VectorOperators.Associative operator, int identity) {
+        IntVector accumulator = IntVector.broadcast(INTS, identity);
+        int i = 0;
+        for (int bound = INTS.loopBound(length); i < bound; i += INTS.length()) {
+            accumulator = accumulator.lanewise(operator, IntVector.fromByteBuffer(INTS, src, i * ELEMENT_SIZE, ORDER));
+        }
+        IntVector tail = IntVector.broadcast(INTS, identity);
+        for (int lane = 0; i < length; i++, lane++) {
+            tail = tail.withLane(lane, src.getInt(i * ELEMENT_SIZE));
+        }
+        return accumulator.lanewise(operator, tail).reduceLanes(operator);
+    }
+
+    @Override
+    public void convertFloatsToInts(@Pointer long dst, @Pointer long src, long count, float scale) {
+        if (count < MIN_VECTORIZED_LENGTH || FLOATS.length() != INTS.length()) {
+            fallback.convertFloatsToInts(dst, src, count, scale);
+            return;
+        }
+        for (long done = 0; done < count; done += MAX_CHUNK_LENGTH) {
+            int length = chunkLength(count, done);
+            convertFloatsToInts(view(dst, done, length), view(src, done, length), length, scale);
+        }
+    }
+
+    static void convertFloatsToInts(ByteBuffer dst, ByteBuffer src, int length, float scale) {
+        int i = 0;
+        for (int bound = FLOATS.loopBound(length); i < bound; i += FLOATS.length()) {
+            int offset = i * ELEMENT_SIZE;
+            FloatVector.fromByteBuffer(FLOATS, src, offset, ORDER)
+                    .mul(scale)
+                    .convert(VectorOperators.F2I, 0)
+                    .intoByteBuffer(dst, offset, ORDER);
+        }
+        for (; i < length; i++) {
+            int offset = i * ELEMENT_SIZE;
+            dst.putInt(offset, (int) (src.getFloat(offset) * scale));
+        }
+    }
+
+    @Override
+    public void convertIntsToFloats(@Pointer long dst, @Pointer long src, long count, float scale) {
+        if (count < MIN_VECTORIZED_LENGTH || FLOATS.length() != INTS.length()) {
+            fallback.convertIntsToFloats(dst, src, count, scale);
+            return;
+        }
+        for (long done = 0; done < count; done += MAX_CHUNK_LENGTH) {
+            int length = chunkLength(count, done);
+            convertIntsToFloats(view(dst, done, length), view(src, done, length), length, scale);
+        }
+    }
+
+    static void convertIntsToFloats(ByteBuffer dst, ByteBuffer src, int length, float scale) {
+        int i = 0;
+        for (int bound = INTS.loopBound(length); i < bound; i += INTS.length()) {
+            int offset = i * ELEMENT_SIZE;
+            ((FloatVector) IntVector.fromByteBuffer(INTS, src, offset, ORDER).convert(VectorOperators.I2F, 0))
+                    .mul(scale)
+                    .intoByteBuffer(dst, offset, ORDER);
+        }
+        for (; i < length; i++) {
+            int offset = i * ELEMENT_SIZE;
+            dst.putFloat(offset, src.getInt(offset) * scale);
+        }
+    }
+
+    private static int chunkLength(long count, long done) {
+        return (int) Math.min(count - done, MAX_CHUNK_LENGTH);
+    }
+
+    private static ByteBuffer view(@Pointer long address, long firstElement, int length) {
+        return Pointers.asByteBuffer(address + firstElement * ELEMENT_SIZE, length * ELEMENT_SIZE);
+    }
+}
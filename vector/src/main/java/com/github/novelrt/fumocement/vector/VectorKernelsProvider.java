@@ -0,0 +1,15 @@
+// Copyright © Matt Jones and Contributors. Licensed under the MIT License (MIT). See LICENCE.md in the repository root for more information.
+
+package com.github.novelrt.fumocement.vector;
+
+import com.github.novelrt.fumocement.memory.NativeKernels;
+
+/**
+ * Provides the implementation of {@link NativeKernels} using the Vector API.
+ */
+public final class VectorKernelsProvider implements NativeKernels.Provider {
+    @Override
+    public NativeKernels.Implementation create(NativeKernels.Implementation fallback) {
+        return new VectorKernels(fallback);
+    }
+}
@@ -0,0 +1,15 @@
+// Copyright © Matt Jones and Contributors. Licensed under the MIT License (MIT). See LICENCE.md in the repository root for more information.
+
+/**
+ * The optional FumoCement module implementing {@link com.github.novelrt.fumocement.memory.NativeKernels}
+ * with the incubating Vector API.
+ */
+module novelrt.fumocement.vector {
+    requires novelrt.fumocement;
+    // javac always warns about incubator modules, which can't be turned off with -Xlint. Only this module uses it,
+    // which keeps the warning out of the build of the main module.
+    requires jdk.incubator.vector;
+
+    provides com.github.novelrt.fumocement.memory.NativeKernels.Provider with
+            com.github.novelrt.fumocement.vector.VectorKernelsProvider;
+}